@@ -0,0 +1,27 @@
+package de.ulrich_boeing.map;
+
+/**
+ * The Accuracy of the trigonometric (sin, fullsin, cos, fullcos) steps of a
+ * ComplexMap.
+ * <ul>
+ * <li>Exact: Math.sin and Math.cos.</li>
+ * <li>Fine: Approximations with a maximum error of 1e-6 (sine table with 4096
+ * entries).</li>
+ * <li>Coarse: Approximations with a maximum error of 1e-4 (sine table with 256
+ * entries, which needs less cache).</li>
+ * </ul>
+ * The exponential steps (exp, outward, inward) are always calculated by
+ * Math.pow: an approximation in Java was not faster than its intrinsic.
+ */
+public enum Accuracy {
+	Exact(0, 0), Fine(1e-6f, 4096), Coarse(1e-4f, 256);
+
+	final float maxError;
+	// number of entries of the sine table
+	final int tableSize;
+
+	Accuracy(float maxError, int tableSize) {
+		this.maxError = maxError;
+		this.tableSize = tableSize;
+	}
+}
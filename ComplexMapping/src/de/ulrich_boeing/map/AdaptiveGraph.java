@@ -0,0 +1,150 @@
+package de.ulrich_boeing.map;
+
+import java.util.Arrays;
+
+/**
+ * An AdaptiveGraph approximates a ComplexMap like a Graph with nodes connected
+ * by straight lines, but the nodes are not evenly spaced.<br>
+ * Starting with a coarse even grid, every line is split in half until the
+ * distance between line and ComplexMap is below maxError. So flat regions get
+ * few nodes and steep regions (e.g. of exp or peak) get many nodes.<br>
+ * <br>
+ * To find the line of a value x, an index with evenly spaced entries points to
+ * the line at the start of each entry. The lines of one entry are binary
+ * searched, because a steep region can put thousands of lines into one entry.
+ *
+ * @author Ulrich Bing
+ *
+ */
+class AdaptiveGraph extends Map {
+	// number of lines before the first split
+	private static final int START_SECTIONS = 8;
+	// a line of the start grid is split at most 16 times, to 1 / 2^19
+	private static final int MAX_DEPTH = 16;
+
+	// x and y of all nodes and the slope of each line
+	private float[] xNodes, yNodes, slopes;
+	private int[] index;
+	private float maxError;
+
+	// only used while the graph is built
+	private int count;
+
+	AdaptiveGraph(String str, float maxError) {
+		this(new ComplexMap(str), maxError);
+	}
+
+	AdaptiveGraph(ComplexMap complexMap, float maxError) {
+		super();
+		build(complexMap, maxError);
+	}
+
+	private void build(ComplexMap map, float maxError) {
+		this.maxError = maxError;
+		xNodes = new float[64];
+		yNodes = new float[64];
+		count = 0;
+
+		addNode(0, map.normMap(0));
+		for (int i = 0; i < START_SECTIONS; i++) {
+			float x0 = (float) i / START_SECTIONS;
+			float x1 = (float) (i + 1) / START_SECTIONS;
+			split(map, x0, yNodes[count - 1], x1, map.normMap(x1), 0);
+		}
+		xNodes = Arrays.copyOf(xNodes, count);
+		yNodes = Arrays.copyOf(yNodes, count);
+
+		slopes = new float[count];
+		for (int i = 0; i < count - 1; i++) {
+			slopes[i] = (yNodes[i + 1] - yNodes[i]) / (xNodes[i + 1] - xNodes[i]);
+		}
+		buildIndex();
+	}
+
+	/*
+	 * Adds the nodes of the line from (x0, y0) to (x1, y1), the node (x0, y0) is
+	 * already added. The line is split in half if the ComplexMap at 1/4, 1/2 or 3/4
+	 * of the line is farther away than maxError.
+	 */
+	private void split(ComplexMap map, float x0, float y0, float x1, float y1, int depth) {
+		float xm = (x0 + x1) / 2;
+		float ym = map.normMap(xm);
+		if (depth < MAX_DEPTH && (Math.abs(ym - (y0 + y1) / 2) > maxError
+				|| Math.abs(map.normMap((x0 + xm) / 2) - (3 * y0 + y1) / 4) > maxError
+				|| Math.abs(map.normMap((xm + x1) / 2) - (y0 + 3 * y1) / 4) > maxError)) {
+			split(map, x0, y0, xm, ym, depth + 1);
+			split(map, xm, ym, x1, y1, depth + 1);
+		} else {
+			addNode(x1, y1);
+		}
+	}
+
+	private void addNode(float x, float y) {
+		if (count == xNodes.length) {
+			xNodes = Arrays.copyOf(xNodes, count * 2);
+			yNodes = Arrays.copyOf(yNodes, count * 2);
+		}
+		xNodes[count] = x;
+		yNodes[count] = y;
+		count++;
+	}
+
+	/*
+	 * The index has about as many entries as there are lines, index[k] is the line
+	 * which contains x = k / (index.length - 1). So the lines of the entry k are
+	 * index[k] to index[k + 1].
+	 */
+	private void buildIndex() {
+		int lines = xNodes.length - 1;
+		index = new int[lines + 1];
+		int line = 0;
+		for (int k = 0; k < index.length; k++) {
+			float x = (float) k / lines;
+			while (line < lines - 1 && xNodes[line + 1] <= x) {
+				line++;
+			}
+			index[k] = line;
+		}
+	}
+
+	@Override
+	float normMap(float x) {
+		int k = (int) (x * (index.length - 1));
+		int low = index[k];
+		int high = index[Math.min(k + 1, index.length - 1)];
+		// the rounding of k can put x just behind the lines of the entry
+		while (high < xNodes.length - 2 && x >= xNodes[high + 1]) {
+			high++;
+		}
+		// the first line from low to high which ends behind x
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (x >= xNodes[mid + 1]) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return yNodes[low] + (x - xNodes[low]) * slopes[low];
+	}
+
+	@Override
+	void normMapAll(float[] x, int offset, int length) {
+		for (int j = offset; j < offset + length; j++) {
+			x[j] = normMap(x[j]);
+		}
+	}
+
+	int numNodes() {
+		return xNodes.length;
+	}
+
+	@Override
+	public String toString() {
+		String str = "AdaptiveGraph:\n";
+		str += " nodes: " + xNodes.length + " for maxError " + maxError + "\n";
+		str += super.toString();
+		return str;
+	}
+
+}
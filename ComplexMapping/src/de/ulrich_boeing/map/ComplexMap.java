@@ -1,5 +1,7 @@
 package de.ulrich_boeing.map;
 
+import java.util.Arrays;
+
 /**
  * The class ComplexMap is created by a string with one or more (mathematical)
  * operations. It maps input to output values according to this string.<br>
@@ -18,20 +20,56 @@ package de.ulrich_boeing.map;
 class ComplexMap extends Map {
 	Mapping[] mappings;
 	float sumWeight = 0;
+	Accuracy accuracy = Accuracy.Exact;
 
 	ComplexMap(String str) {
-		super();
-		build(str);
+		this(Parser.parse(str), true);
+	}
+
+	ComplexMap(MapExpr expr) {
+		this(expr, true);
 	}
 
-	void build(String str) {
-		str = prepareString(str);
-		String[] arr = str.split("\\s*&\\s*");
+	/**
+	 * @param str
+	 *            The map-defining string.
+	 * @param accuracy
+	 *            The Accuracy of the trigonometric steps.
+	 */
+	ComplexMap(String str, Accuracy accuracy) {
+		this(Parser.parse(str), accuracy);
+	}
 
-		int countMappings = arr.length;
-		mappings = new Mapping[countMappings];
-		for (int i = 0; i < countMappings; i++) {
-			mappings[i] = new Mapping(arr[i]);
+	ComplexMap(MapExpr expr, Accuracy accuracy) {
+		this(expr, true);
+		this.accuracy = accuracy;
+		for (Mapping mapping : mappings) {
+			for (Step step : mapping.steps) {
+				step.accuracy = accuracy;
+			}
+		}
+	}
+
+	/**
+	 * @param str
+	 *            The map-defining string.
+	 * @param optimize
+	 *            If true, the parsed steps are rewritten into cheaper equivalents
+	 *            by the Optimizer.
+	 */
+	ComplexMap(String str, boolean optimize) {
+		this(Parser.parse(str), optimize);
+	}
+
+	ComplexMap(MapExpr expr, boolean optimize) {
+		super();
+		build(expr, optimize);
+	}
+
+	void build(MapExpr expr, boolean optimize) {
+		mappings = expr.toMappings();
+		if (optimize) {
+			Optimizer.optimize(this);
 		}
 		sumWeight = getSumWeight();
 	}
@@ -54,14 +92,65 @@ class ComplexMap extends Map {
 		return sum / sumWeight;
 	}
 
+	/*
+	 * Each Mapping runs step by step over a whole block of values, so the dispatch
+	 * and the parameters of a step are loaded once per block and not once per
+	 * value.
+	 */
+	@Override
+	void normMapAll(float[] x, int offset, int length) {
+		if (mappings.length == 1) {
+			mappings[0].normMapAll(x, offset, length);
+			for (int i = offset; i < offset + length; i++) {
+				x[i] /= sumWeight;
+			}
+			return;
+		}
+
+		float[] sum = new float[Math.min(length, BLOCK_SIZE)];
+		float[] block = new float[sum.length];
+		for (int done = 0; done < length; done += BLOCK_SIZE) {
+			int n = Math.min(BLOCK_SIZE, length - done);
+			Arrays.fill(sum, 0, n, 0);
+			for (Mapping mapping : mappings) {
+				System.arraycopy(x, offset + done, block, 0, n);
+				mapping.normMapAll(block, 0, n);
+				for (int i = 0; i < n; i++) {
+					sum[i] += block[i];
+				}
+			}
+			for (int i = 0; i < n; i++) {
+				x[offset + done + i] = sum[i] / sumWeight;
+			}
+		}
+	}
+
 	/**
-	 * A ComplexMap is calculated faster than a corresponding graph if there is a
-	 * maximum of three steps and all three steps are calculated fast. All
-	 * exponential and trigonometric functions are calculated slow.
+	 * A ComplexMap is calculated faster than a corresponding graph of the default
+	 * precision if the CostModel predicts so from the costs of its Mappings and
+	 * steps. Approximated steps (Accuracy Fine or Coarse) are much cheaper than
+	 * exact trigonometric steps.<br>
+	 * The steps are counted after the Optimizer, so e.g. 'x > narrow > narrow' is
+	 * one step.
 	 */
 	boolean isFast() {
-		int numSteps = numSteps();
-		return numSteps <= 3 && numSteps == numFastSteps();
+		return CostModel.isCheaper(this, Graph.defaultPrecision.resolution);
+	}
+
+	/**
+	 * 
+	 * @return true, if a step is random or squarerandom without a seed, so two
+	 *         ComplexMaps with the same definition string are different.
+	 */
+	boolean isRandom() {
+		for (Mapping mapping : mappings) {
+			for (Step step : mapping.steps) {
+				if (step.isRandom()) {
+					return true;
+				}
+			}
+		}
+		return false;
 	}
 
 	/**
@@ -84,7 +173,7 @@ class ComplexMap extends Map {
 		int numFastSteps = 0;
 		for (Mapping mapping : mappings) {
 			for (Step step : mapping.steps) {
-				if (step.type.fast) {
+				if (step.isFast()) {
 					numFastSteps++;
 				}
 			}
@@ -92,53 +181,12 @@ class ComplexMap extends Map {
 		return numFastSteps;
 	}
 
-	/**
-	 * A static method to prepare a map-defining string.
-	 * 
-	 * @param str
-	 *            String to prepare.
-	 * @return A trimmed, lower case string with at least one 'x' and no empty
-	 *         operations: <br>
-	 *         <ul>
-	 *         <li>'> >' are replaced with a single '>'</li>
-	 *         <li>'& >' and '> &' are replace with a single '&'</li>
-	 *         </ul>
-	 */
-	private String prepareString(String str) {
-		/*
-		 * change all tabs and newLines in the form '\t' '\n' to ' '
-		 */
-		str = str.replaceAll("[\\t\\n]", " ");
-		/*
-		 * Remove all operators (>, &) and whitespace before and after the first operand
-		 * (e.g. invert)
-		 */
-		str = str.replaceAll("^[ >&]+", "").replaceAll("[ >&]+$", "");
-
-		/*
-		 * Remove all ">>" or "> >" or combinations of these ">> >  > >" and replace
-		 * with a single ">"
-		 */
-		str = str.replaceAll(">(\\s*>)+", ">");
-
-		/*
-		 * Remove all "& &" and "& >" and "> &" and replace with a single "&" Warning:
-		 * This works only with the instruction before, otherwise all "> >" would also
-		 * be replaced with "&"
-		 */
-		str = str.replaceAll("[&>](\\s*[&>])+", "&");
-
-		str = str.toLowerCase();
-
-		if (str.length() == 0) {
-			str = "x";
-		}
-		return str;
-	}
-
 	@Override
 	public String toString() {
 		String str = "ComplexMap: '" + getRealDefString() + "' \n";
+		if (accuracy != Accuracy.Exact) {
+			str += " accuracy = " + accuracy + "\n";
+		}
 		str += " sumWeight = " + sumWeight + "\n";
 		str += super.toString();
 		return str;
@@ -161,4 +209,16 @@ class ComplexMap extends Map {
 		return str;
 	}
 
+	/**
+	 * @return The real definition string plus the Accuracy, if it is not Exact.
+	 *         ComplexMaps with the same key calculate the same values.
+	 */
+	String getKey() {
+		String str = getRealDefString();
+		if (accuracy != Accuracy.Exact) {
+			str += " @" + accuracy;
+		}
+		return str;
+	}
+
 }
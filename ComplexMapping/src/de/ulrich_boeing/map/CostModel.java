@@ -0,0 +1,234 @@
+package de.ulrich_boeing.map;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * The CostModel predicts the time of a single map() call of a ComplexMap and of
+ * a Graph, so Map.create(String) can choose the cheaper one. map() is measured
+ * and not normMap(), because the Graph maps through its GraphKernel.<br>
+ * <br>
+ * The costs are nanoseconds per call:
+ * <ul>
+ * <li>complexMap: the ComplexMap itself (the ranges, the loop over the
+ * Mappings, the division by sumWeight).</li>
+ * <li>mapping: each Mapping.</li>
+ * <li>step.&lt;type&gt;: each Step of the StepType, approximated.&lt;type&gt;
+ * for a Step with the Accuracy Fine or Coarse.</li>
+ * <li>graph: a Graph whose nodes fit into the first level cache,
+ * graph.large: a Graph with more than LARGE_GRAPH nodes.</li>
+ * </ul>
+ * The costs are loaded from the shipped profile 'costs.properties'. If it is
+ * missing, they are measured by calibrate() at the first use.<br>
+ * A profile for the current machine is created by running this class.
+ *
+ * @author Ulrich Bing
+ *
+ */
+public final class CostModel {
+	private static final String PROFILE = "costs.properties";
+	// A Graph with more nodes doesn't fit into a first level cache of 32 KB.
+	static final int LARGE_GRAPH = 1 << 13;
+
+	private static Properties costs;
+
+	private CostModel() {
+	}
+
+	private static synchronized Properties getCosts() {
+		if (costs == null) {
+			try (InputStream in = CostModel.class.getResourceAsStream(PROFILE)) {
+				if (in != null) {
+					Properties properties = new Properties();
+					properties.load(in);
+					costs = properties;
+				}
+			} catch (IOException e) {
+				System.err.println("Cost profile '" + PROFILE + "' could not be read: " + e.getMessage());
+			}
+			if (costs == null) {
+				costs = measure();
+			}
+		}
+		return costs;
+	}
+
+	private static float getCost(Properties costs, String key) {
+		String value = costs.getProperty(key);
+		if (value == null) {
+			throw new IllegalStateException("Cost profile has no entry '" + key + "'.");
+		}
+		return Float.parseFloat(value);
+	}
+
+	/**
+	 * @return The predicted nanoseconds of a map() call of the ComplexMap.
+	 */
+	static float getCost(ComplexMap map) {
+		// the profile is read once, not once per step
+		Properties costs = getCosts();
+		float cost = getCost(costs, "complexMap");
+		for (Mapping mapping : map.mappings) {
+			cost += getCost(costs, "mapping");
+			for (Step step : mapping.steps) {
+				if (step.accuracy != Accuracy.Exact && step.type.approximated) {
+					cost += getCost(costs, "approximated." + step.type.name());
+				} else {
+					cost += getCost(costs, "step." + step.type.name());
+				}
+			}
+		}
+		return cost;
+	}
+
+	/**
+	 * @return The predicted nanoseconds of a map() call of a Graph with the given
+	 *         resolution.
+	 */
+	static float getGraphCost(int resolution) {
+		return getCost(getCosts(), resolution > LARGE_GRAPH ? "graph.large" : "graph");
+	}
+
+	/**
+	 * @return true, if the ComplexMap is predicted to be faster than a Graph of
+	 *         the given resolution.
+	 */
+	static boolean isCheaper(ComplexMap map, int resolution) {
+		return getCost(map) <= getGraphCost(resolution);
+	}
+
+	/**
+	 * Describes the decision of Map.create(String) for diagnostics.
+	 *
+	 * @param str
+	 *            The map-defining string.
+	 * @return The predicted costs of the ComplexMap and of the Graph and the
+	 *         chosen type.
+	 */
+	public static String explain(String str) {
+		ComplexMap map = new ComplexMap(str);
+		int resolution = Graph.defaultPrecision.resolution;
+		float complexMapCost = getCost(map);
+		String prefix = "'" + map.getRealDefString() + "': ComplexMap = " + complexMapCost + " ns";
+		if (resolution == 0) {
+			return prefix + ", " + Graph.defaultPrecision + " -> ComplexMap";
+		}
+		float graphCost = getGraphCost(resolution);
+		return prefix + ", Graph(" + resolution + ") = " + graphCost + " ns -> "
+				+ (complexMapCost <= graphCost ? "ComplexMap" : "Graph");
+	}
+
+	/**
+	 * Measures the costs on this machine and uses them instead of the shipped
+	 * profile. This takes about a second.
+	 */
+	public static void calibrate() {
+		Properties measured = measure();
+		synchronized (CostModel.class) {
+			costs = measured;
+		}
+	}
+
+	/**
+	 * Loads a profile, e.g. one that was stored after calibrate().
+	 */
+	public static void load(InputStream in) throws IOException {
+		Properties properties = new Properties();
+		properties.load(in);
+		synchronized (CostModel.class) {
+			costs = properties;
+		}
+	}
+
+	public static void store(OutputStream out) throws IOException {
+		getCosts().store(out, "CostModel: nanoseconds per map() call");
+	}
+
+	/**
+	 * The cost of a step is the time of a ComplexMap with this single step minus
+	 * the time of the ComplexMap 'x'. The Optimizer is not used, so every step is
+	 * measured as it is, with the default parameters.
+	 */
+	private static Properties measure() {
+		float[] x = new float[4096];
+		Random random = new Random(42);
+		for (int i = 0; i < x.length; i++) {
+			x[i] = random.nextFloat();
+		}
+
+		ComplexMap identityMap = new ComplexMap("x");
+		Graph graph = new Graph(Graph.calculateNodes(identityMap, 100), 100);
+		Graph largeGraph = new Graph(Graph.calculateNodes(identityMap, Graph.MAX_RESOLUTION), Graph.MAX_RESOLUTION);
+
+		// warm up with all types and both Graphs, so the first measurements are not
+		// favored
+		for (StepType type : StepType.values()) {
+			measure(new ComplexMap(getDefinition(type), false), x);
+			measure(new ComplexMap(getDefinition(type), Accuracy.Fine), x);
+		}
+		measure(graph, x);
+		measure(largeGraph, x);
+
+		Properties properties = new Properties();
+		float identity = measure(new ComplexMap("x", false), x);
+		float mapping = Math.max(0, measure(new ComplexMap("x & x", false), x) - identity);
+		properties.setProperty("complexMap", Float.toString(Math.max(0, identity - mapping)));
+		properties.setProperty("mapping", Float.toString(mapping));
+		for (StepType type : StepType.values()) {
+			ComplexMap map = new ComplexMap(getDefinition(type), false);
+			properties.setProperty("step." + type.name(), Float.toString(Math.max(0, measure(map, x) - identity)));
+			if (type.approximated) {
+				for (Step step : map.mappings[0].steps) {
+					step.accuracy = Accuracy.Fine;
+				}
+				properties.setProperty("approximated." + type.name(),
+						Float.toString(Math.max(0, measure(map, x) - identity)));
+			}
+		}
+		properties.setProperty("graph", Float.toString(measure(graph, x)));
+		properties.setProperty("graph.large", Float.toString(measure(largeGraph, x)));
+		return properties;
+	}
+
+	// Math.pow is much faster for the default exponent 2 than for others.
+	private static String getDefinition(StepType type) {
+		switch (type) {
+		case exp:
+		case outward:
+		case inward:
+			return type.name() + " 2.5";
+		default:
+			return type.name();
+		}
+	}
+
+	// The fastest of several runs in nanoseconds per call.
+	private static float measure(Map map, float[] x) {
+		float sum = 0;
+		long best = Long.MAX_VALUE;
+		for (int run = 0; run < 60; run++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < x.length; i++) {
+				sum += map.map(x[i]);
+			}
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		// use the sum, so the calls are not removed as dead code
+		if (sum == Float.MIN_VALUE) {
+			System.out.println(sum);
+		}
+		return (float) best / x.length;
+	}
+
+	/**
+	 * Calibrates and prints a profile for this machine, which can replace the
+	 * shipped 'costs.properties'.
+	 */
+	public static void main(String[] args) throws IOException {
+		calibrate();
+		store(System.out);
+	}
+}
@@ -0,0 +1,36 @@
+package de.ulrich_boeing.map;
+
+/**
+ * Approximations of Math.sin for the Accuracy levels Fine and Coarse.
+ */
+final class FastMath {
+	private static final float[] fineTable = createTable(Accuracy.Fine.tableSize);
+	private static final float[] coarseTable = createTable(Accuracy.Coarse.tableSize);
+
+	private FastMath() {
+	}
+
+	/*
+	 * One period of the sine, the extra entries at the end allow the interpolation
+	 * of the last section (and of t = 1 after rounding) without a check.
+	 */
+	private static float[] createTable(int size) {
+		float[] table = new float[size + 2];
+		for (int i = 0; i < table.length; i++) {
+			table[i] = (float) Math.sin(2 * Math.PI * i / size);
+		}
+		return table;
+	}
+
+	/**
+	 * Approximates sin(2 * PI * t) by linear interpolation in a table of the given
+	 * Accuracy. The error of the interpolation is below (PI / size)^2 / 2.
+	 */
+	static float sin2Pi(float t, Accuracy accuracy) {
+		float[] table = accuracy == Accuracy.Coarse ? coarseTable : fineTable;
+		int size = table.length - 2;
+		float section = (t - (float) Math.floor(t)) * size;
+		int i = (int) section;
+		return table[i] + (section - i) * (table[i + 1] - table[i]);
+	}
+}
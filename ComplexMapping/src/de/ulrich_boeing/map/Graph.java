@@ -15,49 +15,266 @@ class Graph extends Map {
 	private float[] nodes;
 	private int resolution;
 	static Precision defaultPrecision = Precision.High;
+	// The highest resolution getResolution() tries.
+	static final int MAX_RESOLUTION = 1 << 16;
+	// The resolution of the inverse of a map which is not a Graph.
+	static final int INVERSE_RESOLUTION = 1 << 12;
 
 	private float min, max;
+	// evaluates the Graph with its ranges, replaced after a change of the ranges
+	private GraphKernel kernel;
 
 	Graph(String str, int resolution) {
 		this(new ComplexMap(str), resolution);
 	}
 
+	// The nodes are taken from the GraphCache, if the same graph has been built before.
 	Graph(ComplexMap complexMap, int resolution) {
+		this(GraphCache.getNodes(complexMap, resolution), resolution);
+	}
+
+	/**
+	 * @param nodes
+	 *            The nodes as calculated by calculateNodes(). They are not copied
+	 *            and may be shared with other Graphs, so they must not be changed.
+	 */
+	Graph(float[] nodes, int resolution) {
+		super();
+		this.nodes = nodes;
+		this.resolution = resolution;
+		setMinMax();
+	}
+
+	/**
+	 * For a subclass which keeps its nodes elsewhere (MappedGraph). It overrides
+	 * getNode(), getNodeArray(), createKernel(), normMap() and normMapAll(), and
+	 * calls setMinMax() when its nodes are set.
+	 */
+	Graph(int resolution) {
 		super();
-		build(complexMap, resolution);
+		this.resolution = resolution;
 	}
 
-	private void build(ComplexMap map, int resolution) {
+	static float[] calculateNodes(ComplexMap map, int resolution) {
 		/*
 		 * (resolution + 1) nodes are connected by resolution lines. If the last node is
 		 * accessed (x == 1), Graph.normMap() needs nodes[resolution + 2]. The value of
-		 * nodes[resolution + 2] doesn't have any effect because in this case (section % 1) == 0
+		 * nodes[resolution + 2] doesn't have any effect because in this case (section - i) == 0
 		 */
-		nodes = new float[resolution + 2];
-		this.resolution = resolution;
+		float[] nodes = new float[resolution + 2];
 
 		for (int i = 0; i <= resolution; i++) {
 			float x = (float) i / resolution;
 			nodes[i] = map.normMap(x);
 		}
 		nodes[nodes.length - 1] = nodes[nodes.length - 2];
-
-		setMinMax();
+		return nodes;
 	}
 
 	@Override
 	float normMap(float x) {
-		// section is the number of the line, (section % 1) is the x-position on that
-		// line
+		// section is the number of the line, (section - i) is the x-position on that
+		// line. It is the same as (section % 1), also for -1 < section < 0, but
+		// without the slow float remainder.
 		float section = x * resolution;
 		int i = (int) section;
-		return nodes[i] + (section % 1) * (nodes[i + 1] - nodes[i]);
+		return nodes[i] + (section - i) * (nodes[i + 1] - nodes[i]);
+	}
+
+	/**
+	 * Get the mapped value for x. The values of the ranges are cached by a
+	 * GraphKernel.
+	 */
+	@Override
+	public float map(float x) {
+		getMetrics().countEvaluations(1);
+		return getKernel().map(x);
+	}
+
+	@Override
+	public float[] mapAll(float[] in, int inOffset, float[] out, int outOffset, int length) {
+		getMetrics().countEvaluations(length);
+		getKernel().mapAll(in, inOffset, out, outOffset, length);
+		return out;
+	}
+
+	/**
+	 * A cursor of a Graph steps from line to line: the values of a line are its
+	 * start plus the distance times its slope, without a division or modulo per
+	 * value.
+	 */
+	@Override
+	public MapCursor cursor(float start, float step) {
+		return new GraphCursor(this, getKernel(), start, step);
+	}
+
+	private GraphKernel getKernel() {
+		GraphKernel kernel = this.kernel;
+		Range input = getInputRange();
+		Range output = getOutputRange();
+		if (kernel == null || !kernel.isValid(input, output)) {
+			kernel = createKernel(input, output);
+			this.kernel = kernel;
+		}
+		return kernel;
+	}
+
+	GraphKernel createKernel(Range input, Range output) {
+		return new GraphKernel.ArrayKernel(nodes, resolution, input, output);
+	}
+
+	float getNode(int i) {
+		return nodes[i];
+	}
+
+	/**
+	 * @return The nodes in the layout of calculateNodes(), they must not be
+	 *         changed.
+	 */
+	float[] getNodeArray() {
+		return nodes;
+	}
+
+	@Override
+	void normMapAll(float[] x, int offset, int length) {
+		float[] nodes = this.nodes;
+		int resolution = this.resolution;
+		for (int j = offset; j < offset + length; j++) {
+			float section = x[j] * resolution;
+			int i = (int) section;
+			x[j] = nodes[i] + (section - i) * (nodes[i + 1] - nodes[i]);
+		}
+	}
+
+	/**
+	 * Finds the smallest resolution of a Graph whose distance to the ComplexMap is
+	 * not greater than maxError. The resolution is doubled until the error is small
+	 * enough, then a binary search finds the smallest one in between.
+	 * 
+	 * @return The resolution or 0, if even MAX_RESOLUTION is not precise enough
+	 *         (e.g. because of the jumps of repeat).
+	 */
+	static int getResolution(ComplexMap map, float maxError) {
+		int high = 1;
+		while (getMaxError(map, high) > maxError) {
+			if (high == MAX_RESOLUTION) {
+				return 0;
+			}
+			high *= 2;
+		}
+		int low = high / 2;
+		// the error of low is too big, the error of high is small enough
+		while (high - low > 1) {
+			int mid = (low + high) / 2;
+			if (getMaxError(map, mid) > maxError) {
+				low = mid;
+			} else {
+				high = mid;
+			}
+		}
+		return high;
+	}
+
+	/**
+	 * Estimates the maximum distance between a Graph and the ComplexMap it is based
+	 * on, without building the graph. The ComplexMap is compared with the lines
+	 * between the nodes at 1/4, 1/2 and 3/4 of each line.
+	 */
+	static float getMaxError(ComplexMap map, int resolution) {
+		float maxError = 0;
+		float y0 = map.normMap(0);
+		for (int i = 1; i <= resolution; i++) {
+			float y1 = map.normMap((float) i / resolution);
+			for (int q = 1; q <= 3; q++) {
+				float x = (i - 1 + q / 4f) / resolution;
+				float error = Math.abs(map.normMap(x) - (y0 + q / 4f * (y1 - y0)));
+				if (error > maxError) {
+					maxError = error;
+				}
+			}
+			y0 = y1;
+		}
+		return maxError;
+	}
+
+	/**
+	 * Gets the nodes of any map for the given resolution, in the layout of
+	 * calculateNodes().
+	 *
+	 * @return The nodes of the map, if it is a Graph of this resolution (they
+	 *         must not be changed), otherwise new nodes sampled by normMap().
+	 */
+	static float[] getNodes(Map map, int resolution) {
+		if (map instanceof Graph && ((Graph) map).resolution == resolution) {
+			return ((Graph) map).getNodeArray();
+		}
+		float[] nodes = new float[resolution + 2];
+		for (int i = 0; i <= resolution; i++) {
+			nodes[i] = map.normMap((float) i / resolution);
+		}
+		nodes[resolution + 1] = nodes[resolution];
+		return nodes;
+	}
+
+	/**
+	 * Inverts monotone nodes: The inverted nodes are evenly spaced on the y-axis,
+	 * their values are the x-positions where the straight lines between the nodes
+	 * reach these y-values. Values of y below or above all nodes get the x of the
+	 * lowest or highest node. If the nodes are constant over some lines, the
+	 * first x is taken.
+	 *
+	 * @param nodes
+	 *            The nodes in the layout of calculateNodes().
+	 * @return The inverted nodes with the same resolution.
+	 * @throws IllegalStateException
+	 *             If the nodes are neither increasing nor decreasing.
+	 */
+	static float[] invertNodes(float[] nodes, int resolution) {
+		boolean increasing = true, decreasing = true;
+		for (int i = 0; i < resolution; i++) {
+			increasing &= nodes[i] <= nodes[i + 1];
+			decreasing &= nodes[i] >= nodes[i + 1];
+		}
+		if (!increasing && !decreasing) {
+			throw new IllegalStateException("Map is not monotone, so it has no inverse.");
+		}
+		// a decreasing curve is inverted as the increasing curve of (1 - x)
+		float[] curve = new float[resolution + 1];
+		for (int i = 0; i <= resolution; i++) {
+			curve[i] = increasing ? nodes[i] : nodes[resolution - i];
+		}
+
+		float[] inverse = new float[resolution + 2];
+		int i = 0;
+		for (int j = 0; j <= resolution; j++) {
+			float y = (float) j / resolution;
+			float x;
+			if (y <= curve[0]) {
+				x = 0;
+			} else if (y >= curve[resolution]) {
+				x = 1;
+			} else {
+				// curve[i] < y <= curve[i + 1]
+				while (curve[i + 1] < y) {
+					i++;
+				}
+				x = (i + (y - curve[i]) / (curve[i + 1] - curve[i])) / resolution;
+			}
+			inverse[j] = increasing ? x : 1 - x;
+		}
+		inverse[resolution + 1] = inverse[resolution];
+		return inverse;
+	}
+
+	int getResolution() {
+		return resolution;
 	}
 
-	private void setMinMax() {
+	void setMinMax() {
 		min = 1;
 		max = 0;
-		for (float node : nodes) {
+		for (int i = 0; i < resolution + 2; i++) {
+			float node = getNode(i);
 			if (node < min) {
 				min = node;
 			}
@@ -82,7 +299,7 @@ class Graph extends Map {
 		float step = (float) (resolution + 1) / (float) (numNodes - 1);
 		for (int i = 0; i < numNodes; i++) {
 			int index = (int) (i * step);
-			str += " node[" + index + "]:\t" + nodes[index] + "\n";
+			str += " node[" + index + "]:\t" + getNode(index) + "\n";
 		}
 		return str;
 	}
@@ -0,0 +1,222 @@
+package de.ulrich_boeing.map;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * A GraphBank is a file with the nodes and ranges of many Graphs, which is
+ * memory-mapped instead of read. The Graphs are evaluated straight from the
+ * mapping, so opening a bank neither parses the definitions nor calculates any
+ * node, and several processes share the same pages of the file.<br>
+ * <br>
+ * File format (little-endian):
+ * <ul>
+ * <li>Header, 16 bytes: magic 'GBNK', version, number of graphs, 0.</li>
+ * <li>Directory, 32 bytes per graph: resolution; input start, input end,
+ * output start, output end (floats); byte offset of the nodes; byte offset and
+ * length of the definition.</li>
+ * <li>Definitions: the real definition strings in UTF-8.</li>
+ * <li>Nodes: (resolution + 2) floats per graph, 4-byte aligned.</li>
+ * </ul>
+ * A bank is created by a Writer:
+ *
+ * <pre>
+ * new GraphBank.Writer().add("triangle > exp 3", 1000).add("sin", 200, 0, 800, 0, 255).write(file);
+ * Map map = GraphBank.open(file).get("triangle > exp 3");
+ * </pre>
+ *
+ * @author Ulrich Bing
+ *
+ */
+public final class GraphBank {
+	private static final int MAGIC = 0x4B4E4247; // 'GBNK' in little-endian
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 16;
+	private static final int ENTRY_SIZE = 32;
+
+	private final ByteBuffer buffer;
+	private final int count;
+	private final String[] definitions;
+	private final HashMap<String, Integer> indices;
+
+	private GraphBank(ByteBuffer buffer, File file) throws IOException {
+		this.buffer = buffer;
+		if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+			throw new IOException("'" + file + "' is not a GraphBank.");
+		}
+		if (buffer.getInt(4) != VERSION) {
+			throw new IOException("GraphBank '" + file + "' has the unknown version " + buffer.getInt(4) + ".");
+		}
+		count = buffer.getInt(8);
+		definitions = new String[count];
+		indices = new HashMap<>(count * 2);
+		for (int i = 0; i < count; i++) {
+			int entry = HEADER_SIZE + i * ENTRY_SIZE;
+			byte[] bytes = new byte[buffer.getInt(entry + 28)];
+			ByteBuffer duplicate = buffer.duplicate();
+			duplicate.position(buffer.getInt(entry + 24));
+			duplicate.get(bytes);
+			definitions[i] = new String(bytes, StandardCharsets.UTF_8);
+			indices.put(definitions[i], i);
+		}
+	}
+
+	/**
+	 * Maps a GraphBank file into memory. The mapping stays valid until the
+	 * GraphBank and all its maps are garbage collected.
+	 */
+	public static GraphBank open(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			return new GraphBank(buffer, file);
+		}
+	}
+
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * @return The real definition string of the graph with the given index.
+	 */
+	public String getDefinition(int index) {
+		return definitions[index];
+	}
+
+	/**
+	 * @param str
+	 *            A map-defining string, it doesn't need to be the real definition
+	 *            string.
+	 * @return The index of the first graph with this definition or -1.
+	 */
+	public int indexOf(String str) {
+		Integer index = indices.get(str);
+		if (index == null) {
+			index = indices.get(new ComplexMap(str).getRealDefString());
+		}
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Creates a map whose nodes are read from the mapped file. Its ranges are
+	 * those stored in the bank, they can be changed like those of any map.
+	 */
+	public Map get(int index) {
+		if (index < 0 || index >= count) {
+			throw new IndexOutOfBoundsException("GraphBank has no graph " + index + ".");
+		}
+		int entry = HEADER_SIZE + index * ENTRY_SIZE;
+		int resolution = buffer.getInt(entry);
+		ByteBuffer duplicate = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		duplicate.position(buffer.getInt(entry + 20));
+		duplicate.limit(duplicate.position() + (resolution + 2) * 4);
+		FloatBuffer nodes = duplicate.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+
+		Map map = new MappedGraph(nodes, resolution);
+		map.setRange(buffer.getFloat(entry + 4), buffer.getFloat(entry + 8), buffer.getFloat(entry + 12),
+				buffer.getFloat(entry + 16));
+		return map;
+	}
+
+	/**
+	 * @param str
+	 *            A map-defining string.
+	 * @return The map with this definition.
+	 * @throws IllegalArgumentException
+	 *             If the bank has no graph with this definition.
+	 */
+	public Map get(String str) {
+		int index = indexOf(str);
+		if (index < 0) {
+			throw new IllegalArgumentException("GraphBank has no graph '" + str + "'.");
+		}
+		return get(index);
+	}
+
+	/**
+	 * The Writer collects graphs and writes them as a GraphBank file.
+	 */
+	public static final class Writer {
+		private final ArrayList<String> definitions = new ArrayList<>();
+		private final ArrayList<float[]> nodes = new ArrayList<>();
+		private final ArrayList<float[]> ranges = new ArrayList<>();
+
+		/**
+		 * Adds a graph with the ranges (0, 1).
+		 */
+		public Writer add(String str, int resolution) {
+			return add(str, resolution, 0, 1, 0, 1);
+		}
+
+		/**
+		 * Adds a graph.
+		 *
+		 * @param str
+		 *            The map-defining string.
+		 * @param resolution
+		 *            The number of lines between the nodes.
+		 */
+		public Writer add(String str, int resolution, float inputStart, float inputEnd, float outputStart,
+				float outputEnd) {
+			ComplexMap complexMap = new ComplexMap(str);
+			definitions.add(complexMap.getRealDefString());
+			nodes.add(GraphCache.getNodes(complexMap, resolution));
+			ranges.add(new float[] { inputStart, inputEnd, outputStart, outputEnd });
+			return this;
+		}
+
+		public void write(File file) throws IOException {
+			int count = definitions.size();
+			byte[][] strings = new byte[count][];
+			int stringsSize = 0;
+			int nodesSize = 0;
+			for (int i = 0; i < count; i++) {
+				strings[i] = definitions.get(i).getBytes(StandardCharsets.UTF_8);
+				stringsSize += strings[i].length;
+				nodesSize += nodes.get(i).length * 4;
+			}
+			int stringsOffset = HEADER_SIZE + count * ENTRY_SIZE;
+			int nodesOffset = (stringsOffset + stringsSize + 3) & ~3;
+
+			ByteBuffer buffer = ByteBuffer.allocate(nodesOffset + nodesSize).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(0);
+			int stringPosition = stringsOffset;
+			int nodePosition = nodesOffset;
+			for (int i = 0; i < count; i++) {
+				float[] range = ranges.get(i);
+				buffer.putInt(nodes.get(i).length - 2);
+				buffer.putFloat(range[0]).putFloat(range[1]).putFloat(range[2]).putFloat(range[3]);
+				buffer.putInt(nodePosition).putInt(stringPosition).putInt(strings[i].length);
+				stringPosition += strings[i].length;
+				nodePosition += nodes.get(i).length * 4;
+			}
+			for (byte[] string : strings) {
+				buffer.put(string);
+			}
+			buffer.position(nodesOffset);
+			for (float[] graphNodes : nodes) {
+				for (float node : graphNodes) {
+					buffer.putFloat(node);
+				}
+			}
+			buffer.flip();
+
+			try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+				channel.truncate(0);
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
+		}
+	}
+}
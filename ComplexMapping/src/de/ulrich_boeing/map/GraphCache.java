@@ -0,0 +1,138 @@
+package de.ulrich_boeing.map;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * The GraphCache holds the nodes of built Graphs for the whole process, so a
+ * Graph with the same definition and resolution as an earlier one shares its
+ * nodes instead of calculating them again.<br>
+ * <br>
+ * The key is the real definition string of the ComplexMap plus the resolution
+ * (and the Accuracy, if it is not Exact).
+ * The weight of an entry is its number of nodes. If the sum of all weights
+ * exceeds maxWeight, the least recently used entries are removed. Maps with
+ * random steps without a seed are not cached, because each of them is
+ * different.<br>
+ * All methods are thread-safe.
+ *
+ * @author Ulrich Bing
+ *
+ */
+public final class GraphCache {
+	private static final Object lock = new Object();
+	// access order: the first entry is the least recently used
+	private static final LinkedHashMap<String, float[]> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+	private static long maxWeight = 1 << 20;
+	private static long weight;
+	private static long hits, misses, evictions;
+
+	private GraphCache() {
+	}
+
+	/**
+	 * Gets the nodes of a Graph from the cache or calculates them.
+	 *
+	 * @return The nodes, they must not be changed.
+	 */
+	static float[] getNodes(ComplexMap map, int resolution) {
+		if (map.isRandom()) {
+			return Graph.calculateNodes(map, resolution);
+		}
+
+		String key = resolution + ":" + map.getKey();
+		synchronized (lock) {
+			float[] nodes = entries.get(key);
+			if (nodes != null) {
+				hits++;
+				return nodes;
+			}
+			misses++;
+		}
+
+		// calculate without holding the lock
+		float[] nodes = Graph.calculateNodes(map, resolution);
+		synchronized (lock) {
+			float[] cached = entries.get(key);
+			if (cached != null) {
+				return cached;
+			}
+			entries.put(key, nodes);
+			weight += nodes.length;
+			evict();
+		}
+		return nodes;
+	}
+
+	// The lock must be held.
+	private static void evict() {
+		Iterator<float[]> iterator = entries.values().iterator();
+		while (weight > maxWeight && iterator.hasNext()) {
+			weight -= iterator.next().length;
+			iterator.remove();
+			evictions++;
+		}
+	}
+
+	/**
+	 * Sets the maximum number of nodes of all cached Graphs together. The default
+	 * is 2^20 nodes (4 MB).
+	 */
+	public static void setMaxWeight(long maxWeight) {
+		synchronized (lock) {
+			GraphCache.maxWeight = maxWeight;
+			evict();
+		}
+	}
+
+	public static void clear() {
+		synchronized (lock) {
+			entries.clear();
+			weight = 0;
+		}
+	}
+
+	public static long getHits() {
+		synchronized (lock) {
+			return hits;
+		}
+	}
+
+	public static long getMisses() {
+		synchronized (lock) {
+			return misses;
+		}
+	}
+
+	public static long getEvictions() {
+		synchronized (lock) {
+			return evictions;
+		}
+	}
+
+	/**
+	 * @return The number of nodes of all cached Graphs together.
+	 */
+	public static long getWeight() {
+		synchronized (lock) {
+			return weight;
+		}
+	}
+
+	public static int size() {
+		synchronized (lock) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * @return A string containing size, weight, hits, misses and evictions.
+	 */
+	public static String getStatistics() {
+		synchronized (lock) {
+			return "GraphCache: " + entries.size() + " graphs, " + weight + " of " + maxWeight + " nodes, hits = "
+					+ hits + ", misses = " + misses + ", evictions = " + evictions;
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package de.ulrich_boeing.map;
+
+/**
+ * A GraphCursor steps through the lines of a Graph by forward differencing: the
+ * section (normalized input value times resolution) is increased by a constant
+ * step, and while it stays on the same line the value is the first node of the
+ * line plus the distance times the slope of the line. Only when it leaves the
+ * line, the next line is looked up. So a value costs no division, no modulo and
+ * no normalization of the input, only the deNormalization of the output.<br>
+ * <br>
+ * The section is added up in double, so after millions of steps it is still
+ * exact to a small fraction of a float ulp. Values outside the input Range are
+ * mapped by the GraphKernel, so they are repeated or checked as by map(x).
+ *
+ * @author Ulrich Bing
+ *
+ */
+final class GraphCursor extends MapCursor {
+	private final Graph graph;
+	private final GraphKernel kernel;
+	private final int resolution;
+	private final double sectionStep;
+	private double section;
+	// the current line from line to line + 1, no line at the start
+	private int line = Integer.MIN_VALUE;
+	private float base, slope;
+
+	GraphCursor(Graph graph, GraphKernel kernel, float start, float step) {
+		super(graph, start, step);
+		this.graph = graph;
+		this.kernel = kernel;
+		resolution = kernel.resolution;
+		section = (start - (double) kernel.inputStart) / kernel.inputRange * resolution;
+		sectionStep = step / (double) kernel.inputRange * resolution;
+	}
+
+	@Override
+	public float next() {
+		graph.getMetrics().countEvaluations(1);
+		return nextValue();
+	}
+
+	@Override
+	public float[] fill(float[] out, int offset, int n) {
+		graph.getMetrics().countEvaluations(n);
+		for (int j = 0; j < n; j++) {
+			out[offset + j] = nextValue();
+		}
+		return out;
+	}
+
+	private float nextValue() {
+		double s = section;
+		double distance = s - line;
+		float y;
+		if (distance >= 0 && distance <= 1) {
+			y = kernel.deNormalize(base + (float) distance * slope);
+		} else if (s >= 0 && s <= resolution) {
+			// the last line includes the last node
+			line = Math.min((int) s, resolution - 1);
+			base = kernel.node(line);
+			slope = kernel.node(line + 1) - base;
+			y = kernel.deNormalize(base + (float) (s - line) * slope);
+		} else {
+			y = kernel.map(getX());
+		}
+		index++;
+		section = s + sectionStep;
+		return y;
+	}
+}
@@ -0,0 +1,116 @@
+package de.ulrich_boeing.map;
+
+import java.nio.FloatBuffer;
+
+/**
+ * A GraphKernel evaluates a Graph with the values of its input and output Range
+ * cached in final fields:
+ * <ul>
+ * <li>The nodes are the normalized nodes of the Graph, they are not copied. So
+ * Graphs from the GraphCache or a GraphBank still share them.</li>
+ * <li>Values inside the input Range only need two comparisons, values of the
+ * output only two more. Values outside are repeated or limited by
+ * Range.checkRange, with the same ErrorAction as before.</li>
+ * </ul>
+ * The operations are those of Range.normalize, Graph.normMap and
+ * Range.deNormalize in the same order, so the results are exactly those of
+ * output.deNormalize(normMap(input.normalize(x))).<br>
+ * <br>
+ * A kernel belongs to one state of the ranges, the Graph creates a new one
+ * after a change. The nodes are read by node(i), from a float array or from the
+ * FloatBuffer of a MappedGraph.
+ *
+ * @author Ulrich Bing
+ *
+ */
+abstract class GraphKernel {
+	private final Range input, output;
+	private final int inputVersion, outputVersion;
+	// read by GraphCursor
+	final int resolution;
+	final float inputStart, inputRange;
+	private final float inputMin, inputMax;
+	private final float outputStart, outputRange, outputMin, outputMax;
+
+	GraphKernel(int resolution, Range input, Range output) {
+		this.input = input;
+		this.output = output;
+		inputVersion = input.version;
+		outputVersion = output.version;
+		this.resolution = resolution;
+		inputStart = input.getStart();
+		inputRange = input.getRange();
+		inputMin = input.getMin();
+		inputMax = input.getMax();
+		outputStart = output.getStart();
+		outputRange = output.getRange();
+		outputMin = output.getMin();
+		outputMax = output.getMax();
+	}
+
+	// the normalized node i in the layout of Graph.calculateNodes()
+	abstract float node(int i);
+
+	/**
+	 * @return true if the kernel was created for these ranges in their current
+	 *         state.
+	 */
+	boolean isValid(Range input, Range output) {
+		return this.input == input && this.output == output && inputVersion == input.version
+				&& outputVersion == output.version;
+	}
+
+	float map(float x) {
+		if (x < inputMin || x > inputMax) {
+			x = input.checkRange(x);
+		}
+		float section = (x - inputStart) / inputRange * resolution;
+		int i = (int) section;
+		// section is not negative, so (section - i) is the same as (section % 1)
+		float y0 = node(i);
+		return deNormalize(y0 + (section - i) * (node(i + 1) - y0));
+	}
+
+	// the same as output.deNormalize(y)
+	float deNormalize(float y) {
+		y = outputStart + y * outputRange;
+		if (y < outputMin || y > outputMax) {
+			y = output.checkRange(y);
+		}
+		return y;
+	}
+
+	void mapAll(float[] in, int inOffset, float[] out, int outOffset, int length) {
+		for (int j = 0; j < length; j++) {
+			out[outOffset + j] = map(in[inOffset + j]);
+		}
+	}
+
+	static final class ArrayKernel extends GraphKernel {
+		private final float[] nodes;
+
+		ArrayKernel(float[] nodes, int resolution, Range input, Range output) {
+			super(resolution, input, output);
+			this.nodes = nodes;
+		}
+
+		@Override
+		float node(int i) {
+			return nodes[i];
+		}
+	}
+
+	static final class BufferKernel extends GraphKernel {
+		private final FloatBuffer nodes;
+
+		BufferKernel(FloatBuffer nodes, int resolution, Range input, Range output) {
+			super(resolution, input, output);
+			this.nodes = nodes;
+		}
+
+		@Override
+		float node(int i) {
+			return nodes.get(i);
+		}
+	}
+}
@@ -0,0 +1,263 @@
+package de.ulrich_boeing.map;
+
+import de.ulrich_boeing.map.Range.RepeatRange;
+
+/**
+ * An ImmutableMap maps like a Map, but its ranges, its target map and the
+ * ErrorAction on exceeded ranges are fixed when it is built. All fields are
+ * final and nothing is changed while mapping, so one instance can be shared by
+ * many threads without synchronization.<br>
+ * <br>
+ * It is configured by a Builder:
+ *
+ * <pre>
+ * ImmutableMap map = ImmutableMap.builder("triangle > exp 3").input(0, 255).output(0, 100)
+ * 		.target("invert").build();
+ * </pre>
+ *
+ * A different configuration is a new ImmutableMap, e.g. by
+ * toBuilder().output(0, 50).build(). The curves of both maps are shared.
+ *
+ * @author Ulrich Bing
+ *
+ */
+public final class ImmutableMap {
+	// only normMap and normMapAll of the curves are used, they don't change state
+	private final Map curve;
+	private final Map targetCurve;
+	private final ImmutableRange input, output, ratioRange;
+	private final Builder builder;
+	private final MapMetrics metrics = new MapMetrics();
+
+	private ImmutableMap(Builder builder) {
+		curve = builder.curve;
+		targetCurve = builder.targetCurve;
+		ErrorAction onExceedRange = builder.onExceedRange != null ? builder.onExceedRange : Range.onExceedRange;
+		input = new ImmutableRange(builder.inputStart, builder.inputEnd, builder.inputRepeat, onExceedRange, metrics);
+		output = new ImmutableRange(builder.outputStart, builder.outputEnd, RepeatRange.Both, onExceedRange, metrics);
+		ratioRange = new ImmutableRange(builder.ratioStart, builder.ratioEnd, RepeatRange.Both, onExceedRange, metrics);
+		// a copy, so later changes of the builder don't affect toBuilder()
+		this.builder = new Builder(builder);
+	}
+
+	/**
+	 * Starts the configuration of an ImmutableMap. The type of the map
+	 * (ComplexMap, Graph) is automatically detected like in Map.create(String).
+	 *
+	 * @param str
+	 *            The map-defining string.
+	 */
+	public static Builder builder(String str) {
+		return new Builder(Map.create(str));
+	}
+
+	/**
+	 * Starts the configuration of an ImmutableMap with a given precision.
+	 *
+	 * @param str
+	 *            The map-defining string.
+	 * @param precision
+	 *            The precision of the approximation.
+	 */
+	public static Builder builder(String str, Precision precision) {
+		return new Builder(Map.create(str, precision));
+	}
+
+	/**
+	 * @return A Builder with the configuration of this map.
+	 */
+	public Builder toBuilder() {
+		return new Builder(builder);
+	}
+
+	/**
+	 * Get the mapped value for x, the same as Map.map(x).
+	 */
+	public float map(float x) {
+		metrics.countEvaluations(1);
+		x = input.normalize(x);
+		return output.deNormalize(curve.normMap(x));
+	}
+
+	/**
+	 * Get the mapped value for x, the same as Map.map(x, ratio).
+	 *
+	 * @param ratio
+	 *            The ratio between main and target map.
+	 */
+	public float map(float x, float ratio) {
+		if (targetCurve == null) {
+			Map.noTargetMap(metrics);
+			return map(x);
+		}
+		metrics.countEvaluations(1);
+		float normX = input.normalize(x);
+		float y1 = output.deNormalize(curve.normMap(normX));
+		float y2 = output.deNormalize(targetCurve.normMap(normX));
+		return y1 + ratioRange.normalize(ratio) * (y2 - y1);
+	}
+
+	/**
+	 * Get the mapped values for all values of an array, the same as
+	 * Map.mapAll(in, out).
+	 */
+	public float[] mapAll(float[] in, float[] out) {
+		return mapAll(in, 0, out, 0, in.length);
+	}
+
+	/**
+	 * Get the mapped values for a part of an array, the same as Map.mapAll(in,
+	 * inOffset, out, outOffset, length).
+	 */
+	public float[] mapAll(float[] in, int inOffset, float[] out, int outOffset, int length) {
+		metrics.countEvaluations(length);
+		for (int done = 0; done < length; done += Map.BLOCK_SIZE) {
+			int n = Math.min(Map.BLOCK_SIZE, length - done);
+			input.normalize(in, inOffset + done, out, outOffset + done, n);
+			curve.normMapAll(out, outOffset + done, n);
+			output.deNormalize(out, outOffset + done, n);
+		}
+		return out;
+	}
+
+	/**
+	 * Get the mapped values for a part of an array with the same ratio between
+	 * main and target map, the same as Map.mapAll(in, inOffset, out, outOffset,
+	 * length, ratio).
+	 */
+	public float[] mapAll(float[] in, int inOffset, float[] out, int outOffset, int length, float ratio) {
+		if (targetCurve == null) {
+			Map.noTargetMap(metrics);
+			return mapAll(in, inOffset, out, outOffset, length);
+		}
+		metrics.countEvaluations(length);
+		float normRatio = ratioRange.normalize(ratio);
+		// local scratch arrays, so the map has no mutable state
+		float[] normX = new float[Math.min(length, Map.BLOCK_SIZE)];
+		float[] target = new float[normX.length];
+		for (int done = 0; done < length; done += Map.BLOCK_SIZE) {
+			int n = Math.min(Map.BLOCK_SIZE, length - done);
+			input.normalize(in, inOffset + done, normX, 0, n);
+			System.arraycopy(normX, 0, target, 0, n);
+			targetCurve.normMapAll(target, 0, n);
+			output.deNormalize(target, 0, n);
+			curve.normMapAll(normX, 0, n);
+			output.deNormalize(normX, 0, n);
+			for (int i = 0; i < n; i++) {
+				float y1 = normX[i];
+				out[outOffset + done + i] = y1 + normRatio * (target[i] - y1);
+			}
+		}
+		return out;
+	}
+
+	public MapMetrics getMetrics() {
+		return metrics;
+	}
+
+	public boolean hasTargetMap() {
+		return targetCurve != null;
+	}
+
+	public float getInputStart() {
+		return input.getStart();
+	}
+
+	public float getInputEnd() {
+		return input.getEnd();
+	}
+
+	@Override
+	public String toString() {
+		String str = "ImmutableMap: " + curve.getClass().getSimpleName() + "\n";
+		str += " input: " + input.toString() + "\n";
+		str += " output: " + output.toString() + "\n";
+		if (targetCurve != null) {
+			str += " target: " + targetCurve.getClass().getSimpleName() + "\n";
+		}
+		return str;
+	}
+
+	/**
+	 * The Builder of an ImmutableMap. All ranges are (0, 1) by default, the input
+	 * range is repeated on both sides and the ErrorAction is the value of
+	 * Range.onExceedRange when build() is called. A Builder is not thread-safe,
+	 * the built maps are.
+	 */
+	public static final class Builder {
+		private final Map curve;
+		private Map targetCurve;
+		private float inputStart = 0, inputEnd = 1;
+		private RepeatRange inputRepeat = RepeatRange.Both;
+		private float outputStart = 0, outputEnd = 1;
+		private float ratioStart = 0, ratioEnd = 1;
+		private ErrorAction onExceedRange;
+
+		private Builder(Map curve) {
+			this.curve = curve;
+		}
+
+		private Builder(Builder other) {
+			curve = other.curve;
+			targetCurve = other.targetCurve;
+			inputStart = other.inputStart;
+			inputEnd = other.inputEnd;
+			inputRepeat = other.inputRepeat;
+			outputStart = other.outputStart;
+			outputEnd = other.outputEnd;
+			ratioStart = other.ratioStart;
+			ratioEnd = other.ratioEnd;
+			onExceedRange = other.onExceedRange;
+		}
+
+		public Builder input(float start, float end) {
+			inputStart = start;
+			inputEnd = end;
+			return this;
+		}
+
+		public Builder input(float start, float end, RepeatRange repeat) {
+			inputRepeat = repeat;
+			return input(start, end);
+		}
+
+		public Builder output(float start, float end) {
+			outputStart = start;
+			outputEnd = end;
+			return this;
+		}
+
+		public Builder ratioRange(float start, float end) {
+			ratioStart = start;
+			ratioEnd = end;
+			return this;
+		}
+
+		/**
+		 * Sets the target map, whose type is automatically detected. It uses the
+		 * input and output range of the main map.
+		 */
+		public Builder target(String str) {
+			targetCurve = Map.create(str);
+			return this;
+		}
+
+		public Builder target(String str, Precision precision) {
+			targetCurve = Map.create(str, precision);
+			return this;
+		}
+
+		/**
+		 * Sets the ErrorAction of this map, independent of later changes of
+		 * Range.onExceedRange.
+		 */
+		public Builder onExceedRange(ErrorAction onExceedRange) {
+			this.onExceedRange = onExceedRange;
+			return this;
+		}
+
+		public ImmutableMap build() {
+			return new ImmutableMap(this);
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package de.ulrich_boeing.map;
+
+import de.ulrich_boeing.map.Range.RepeatRange;
+
+/**
+ * The Range of an ImmutableMap. Start, end, repeat and the ErrorAction are fixed
+ * when it is created, so it can be used by many threads at the same time.<br>
+ * It normalizes and deNormalizes exactly like a Range with the same values.
+ *
+ * @author Ulrich Bing
+ *
+ */
+final class ImmutableRange {
+	private final float start;
+	private final float end;
+	private final float range;
+	private final float min;
+	private final float max;
+	private final RepeatRange repeat;
+	private final ErrorAction onExceedRange;
+	private final MapMetrics metrics;
+
+	ImmutableRange(float start, float end, RepeatRange repeat, ErrorAction onExceedRange, MapMetrics metrics) {
+		this.start = start;
+		this.end = end;
+		range = end - start;
+		min = Math.min(start, end);
+		max = Math.max(start, end);
+		this.repeat = repeat;
+		this.onExceedRange = onExceedRange;
+		this.metrics = metrics;
+	}
+
+	private float checkRange(float x) {
+		return Range.checkRange(x, start, end, min, max, repeat, onExceedRange, metrics);
+	}
+
+	float normalize(float x) {
+		x = checkRange(x);
+		return (x - start) / range;
+	}
+
+	float deNormalize(float x) {
+		x = start + x * range;
+		return checkRange(x);
+	}
+
+	void normalize(float[] in, int inOffset, float[] out, int outOffset, int length) {
+		for (int i = 0; i < length; i++) {
+			float x = checkRange(in[inOffset + i]);
+			out[outOffset + i] = (x - start) / range;
+		}
+	}
+
+	void deNormalize(float[] x, int offset, int length) {
+		for (int i = offset; i < offset + length; i++) {
+			x[i] = checkRange(start + x[i] * range);
+		}
+	}
+
+	float getStart() {
+		return start;
+	}
+
+	float getEnd() {
+		return end;
+	}
+
+	@Override
+	public String toString() {
+		return Range.toString(start, end);
+	}
+}
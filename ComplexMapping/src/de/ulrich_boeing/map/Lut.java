@@ -0,0 +1,184 @@
+package de.ulrich_boeing.map;
+
+/**
+ * A Lut (lookup table) holds the mapped values of all integers from inStart to
+ * inEnd, created by Map.toLut(). A lookup is a single array load, without the
+ * normalization and the calculation of the curve. The values are exactly those
+ * of Map.map(x), later changes of the map are not taken into account.<br>
+ * <br>
+ * Rounding: the integer tables (int, short, byte) round with Math.round(), so
+ * .5 is rounded up. The short and byte tables are unsigned and clamp the rounded
+ * values to 0-65535 and 0-255. The apply methods read their input unsigned as
+ * well, so a byte is 0-255 and a short 0-65535.
+ *
+ * <pre>
+ * Lut lut = Map.create("exp 2").setRange(0, 255, 0, 255).toLut(0, 255);
+ * lut.apply(pixels, pixels); // one array load per 8-bit value
+ * </pre>
+ *
+ * A Lut is immutable and thread-safe.
+ *
+ * @author Ulrich Bing
+ *
+ */
+public final class Lut {
+	private final int start, end;
+	private final float[] values;
+	// created on first use, a race only creates an equal table twice
+	private volatile int[] ints;
+	private volatile short[] shorts;
+	private volatile byte[] bytes;
+
+	Lut(Map map, int start, int end) {
+		if (end < start) {
+			throw new IllegalArgumentException("The end " + end + " of a Lut is smaller than its start " + start + ".");
+		}
+		this.start = start;
+		this.end = end;
+		values = new float[end - start + 1];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = start + i;
+		}
+		map.mapAll(values);
+	}
+
+	public int getStart() {
+		return start;
+	}
+
+	public int getEnd() {
+		return end;
+	}
+
+	/**
+	 * @param x
+	 *            An integer from start to end.
+	 * @return The same value as Map.map(x).
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             If x is outside start-end.
+	 */
+	public float map(int x) {
+		return values[x - start];
+	}
+
+	/**
+	 * @return The mapped value rounded to an int.
+	 */
+	public int mapInt(int x) {
+		return getInts()[x - start];
+	}
+
+	/**
+	 * @return The mapped values of start to end.
+	 */
+	public float[] toFloatArray() {
+		return values.clone();
+	}
+
+	/**
+	 * @return The mapped values of start to end, rounded.
+	 */
+	public int[] toIntArray() {
+		return getInts().clone();
+	}
+
+	/**
+	 * @return The mapped values of start to end, rounded and clamped to 0-255.
+	 *         (Read them with b &amp; 0xFF.)
+	 */
+	public byte[] toByteArray() {
+		return getBytes().clone();
+	}
+
+	/**
+	 * Maps 8-bit values, e.g. a channel of an image. in and out can be the same
+	 * array.
+	 *
+	 * @param in
+	 *            Values from 0 to 255, the Lut must contain all of them.
+	 * @param out
+	 *            The mapped values, rounded and clamped to 0-255.
+	 * @return out
+	 */
+	public byte[] apply(byte[] in, byte[] out) {
+		byte[] bytes = getBytes();
+		for (int i = 0; i < in.length; i++) {
+			out[i] = bytes[(in[i] & 0xFF) - start];
+		}
+		return out;
+	}
+
+	public float[] apply(byte[] in, float[] out) {
+		for (int i = 0; i < in.length; i++) {
+			out[i] = values[(in[i] & 0xFF) - start];
+		}
+		return out;
+	}
+
+	/**
+	 * Maps 16-bit values. in and out can be the same array.
+	 *
+	 * @param in
+	 *            Values from 0 to 65535, the Lut must contain all of them.
+	 * @param out
+	 *            The mapped values, rounded and clamped to 0-65535.
+	 * @return out
+	 */
+	public short[] apply(short[] in, short[] out) {
+		short[] shorts = getShorts();
+		for (int i = 0; i < in.length; i++) {
+			out[i] = shorts[(in[i] & 0xFFFF) - start];
+		}
+		return out;
+	}
+
+	public float[] apply(short[] in, float[] out) {
+		for (int i = 0; i < in.length; i++) {
+			out[i] = values[(in[i] & 0xFFFF) - start];
+		}
+		return out;
+	}
+
+	private int[] getInts() {
+		int[] ints = this.ints;
+		if (ints == null) {
+			ints = new int[values.length];
+			for (int i = 0; i < ints.length; i++) {
+				ints[i] = Math.round(values[i]);
+			}
+			this.ints = ints;
+		}
+		return ints;
+	}
+
+	private short[] getShorts() {
+		short[] shorts = this.shorts;
+		if (shorts == null) {
+			int[] ints = getInts();
+			shorts = new short[ints.length];
+			for (int i = 0; i < shorts.length; i++) {
+				shorts[i] = (short) Math.min(0xFFFF, Math.max(0, ints[i]));
+			}
+			this.shorts = shorts;
+		}
+		return shorts;
+	}
+
+	private byte[] getBytes() {
+		byte[] bytes = this.bytes;
+		if (bytes == null) {
+			int[] ints = getInts();
+			bytes = new byte[ints.length];
+			for (int i = 0; i < bytes.length; i++) {
+				bytes[i] = (byte) Math.min(0xFF, Math.max(0, ints[i]));
+			}
+			this.bytes = bytes;
+		}
+		return bytes;
+	}
+
+	@Override
+	public String toString() {
+		return "Lut: " + values.length + " values from " + start + " to " + end;
+	}
+}
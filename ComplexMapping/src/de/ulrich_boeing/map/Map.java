@@ -1,5 +1,7 @@
 package de.ulrich_boeing.map;
 
+import java.util.concurrent.ForkJoinPool;
+
 import de.ulrich_boeing.map.Range.RepeatRange;
 
 /**
@@ -14,8 +16,15 @@ import de.ulrich_boeing.map.Range.RepeatRange;
  */
 
 abstract public class Map {
+	/*
+	 * The number of values the mapAll methods process at once. A block of this
+	 * size fits into the first level cache while it passes all steps of a map.
+	 */
+	static final int BLOCK_SIZE = 256;
+
 	private Map targetMap;
 	private Range input, output, ratioRange;
+	private final MapMetrics metrics = new MapMetrics();
 
 	/**
 	 * The Map constructor is only called by the ComplexMap and Graph
@@ -26,6 +35,9 @@ abstract public class Map {
 		input = new Range(0, 1);
 		output = new Range(0, 1);
 		ratioRange = new Range(0, 1);
+		input.metrics = metrics;
+		output.metrics = metrics;
+		ratioRange.metrics = metrics;
 	}
 
 	/**
@@ -36,6 +48,7 @@ abstract public class Map {
 	 * @return The mapped value.
 	 */
 	public float map(float x) {
+		metrics.countEvaluations(1);
 		x = input.normalize(x);
 		return output.deNormalize(normMap(x));
 	}
@@ -43,6 +56,67 @@ abstract public class Map {
 	// An abstract method overwritten in ComplexMap and Graph.
 	abstract float normMap(float x);
 
+	/**
+	 * Get the mapped values for all values of an array.<br>
+	 * The result is the same as calling map(x) for every single value, but the
+	 * values are processed in blocks, so the work that is needed once per call
+	 * (e.g. walking through the steps of a ComplexMap) is done once per block.
+	 *
+	 * @param in
+	 *            The values to map.
+	 * @param out
+	 *            The array for the mapped values, at least as long as in. It may
+	 *            be the same array as in.
+	 * @return The array out.
+	 */
+	public float[] mapAll(float[] in, float[] out) {
+		return mapAll(in, 0, out, 0, in.length);
+	}
+
+	/**
+	 * Replaces all values of an array with their mapped values.
+	 *
+	 * @param values
+	 *            The values to map.
+	 * @return The array values.
+	 */
+	public float[] mapAll(float[] values) {
+		return mapAll(values, 0, values, 0, values.length);
+	}
+
+	/**
+	 * Get the mapped values for a part of an array.
+	 *
+	 * @param in
+	 *            The values to map.
+	 * @param inOffset
+	 *            The index of the first value to map.
+	 * @param out
+	 *            The array for the mapped values. It may be the same array as in,
+	 *            but then inOffset and outOffset must be equal.
+	 * @param outOffset
+	 *            The index of the first mapped value in out.
+	 * @param length
+	 *            The number of values to map.
+	 * @return The array out.
+	 */
+	public float[] mapAll(float[] in, int inOffset, float[] out, int outOffset, int length) {
+		metrics.countEvaluations(length);
+		for (int done = 0; done < length; done += BLOCK_SIZE) {
+			int n = Math.min(BLOCK_SIZE, length - done);
+			input.normalize(in, inOffset + done, out, outOffset + done, n);
+			normMapAll(out, outOffset + done, n);
+			output.deNormalize(out, outOffset + done, n);
+		}
+		return out;
+	}
+
+	/*
+	 * An abstract method overwritten in ComplexMap and Graph. It replaces length
+	 * normalized values of x, starting at offset, with their normMap values.
+	 */
+	abstract void normMapAll(float[] x, int offset, int length);
+
 	/**
 	 * Get the mapped value for x.
 	 * 
@@ -59,7 +133,7 @@ abstract public class Map {
 	public float map(float x, float ratio) {
 		float y1 = map(x);
 		if (targetMap == null) {
-			System.err.println("No targetMap defined, parameter ratio is ignored.");
+			noTargetMap(metrics);
 			return y1;
 		} else {
 			float y2 = targetMap.map(x);
@@ -67,6 +141,177 @@ abstract public class Map {
 		}
 	}
 
+	/**
+	 * Get the mapped values for all values of an array with the same ratio
+	 * between main and target map.<br>
+	 * The result is the same as calling map(x, ratio) for every single value.
+	 *
+	 * @param in
+	 *            The values to map.
+	 * @param out
+	 *            The array for the mapped values, at least as long as in. It may
+	 *            be the same array as in.
+	 * @param ratio
+	 *            The ratio between main and target map.
+	 * @return The array out.
+	 */
+	public float[] mapAll(float[] in, float[] out, float ratio) {
+		return mapAll(in, 0, out, 0, in.length, ratio);
+	}
+
+	/**
+	 * Replaces all values of an array with their mapped values for the given
+	 * ratio between main and target map.
+	 *
+	 * @param values
+	 *            The values to map.
+	 * @param ratio
+	 *            The ratio between main and target map.
+	 * @return The array values.
+	 */
+	public float[] mapAll(float[] values, float ratio) {
+		return mapAll(values, 0, values, 0, values.length, ratio);
+	}
+
+	/**
+	 * Get the mapped values for a part of an array with the same ratio between
+	 * main and target map.
+	 *
+	 * @param in
+	 *            The values to map.
+	 * @param inOffset
+	 *            The index of the first value to map.
+	 * @param out
+	 *            The array for the mapped values. It may be the same array as in,
+	 *            but then inOffset and outOffset must be equal.
+	 * @param outOffset
+	 *            The index of the first mapped value in out.
+	 * @param length
+	 *            The number of values to map.
+	 * @param ratio
+	 *            The ratio between main and target map.
+	 * @return The array out.
+	 */
+	public float[] mapAll(float[] in, int inOffset, float[] out, int outOffset, int length, float ratio) {
+		if (targetMap == null) {
+			noTargetMap(metrics);
+			return mapAll(in, inOffset, out, outOffset, length);
+		}
+		float normRatio = ratioRange.normalize(ratio);
+		float[] target = new float[Math.min(length, BLOCK_SIZE)];
+		for (int done = 0; done < length; done += BLOCK_SIZE) {
+			int n = Math.min(BLOCK_SIZE, length - done);
+			// the target map first, because out may overwrite in
+			targetMap.mapAll(in, inOffset + done, target, 0, n);
+			mapAll(in, inOffset + done, out, outOffset + done, n);
+			for (int i = 0; i < n; i++) {
+				float y1 = out[outOffset + done + i];
+				out[outOffset + done + i] = y1 + normRatio * (target[i] - y1);
+			}
+		}
+		return out;
+	}
+
+	/**
+	 * Get the mapped values for all values of an array, each with its own ratio
+	 * between main and target map.<br>
+	 * The result is the same as calling map(in[i], ratios[i]) for every single
+	 * value.
+	 *
+	 * @param in
+	 *            The values to map.
+	 * @param out
+	 *            The array for the mapped values, at least as long as in. It may
+	 *            be the same array as in.
+	 * @param ratios
+	 *            The ratios between main and target map, at least as long as in.
+	 * @return The array out.
+	 */
+	public float[] mapAll(float[] in, float[] out, float[] ratios) {
+		mapAll(in, out, ratios, 0, in.length);
+		return out;
+	}
+
+	// The same index of in, out and ratios for every value.
+	void mapAll(float[] in, float[] out, float[] ratios, int offset, int length) {
+		if (targetMap == null) {
+			noTargetMap(metrics);
+			mapAll(in, offset, out, offset, length);
+			return;
+		}
+		float[] target = new float[Math.min(length, BLOCK_SIZE)];
+		for (int done = 0; done < length; done += BLOCK_SIZE) {
+			int n = Math.min(BLOCK_SIZE, length - done);
+			int start = offset + done;
+			targetMap.mapAll(in, start, target, 0, n);
+			mapAll(in, start, out, start, n);
+			for (int i = 0; i < n; i++) {
+				float y1 = out[start + i];
+				out[start + i] = y1 + ratioRange.normalize(ratios[start + i]) * (target[i] - y1);
+			}
+		}
+	}
+
+	/**
+	 * Get the mapped values for all values of an array, split into chunks which
+	 * are mapped in parallel by the common ForkJoinPool. Small arrays are mapped
+	 * sequentially.<br>
+	 * The result is the same as calling map(x) for every single value.
+	 *
+	 * @param in
+	 *            The values to map.
+	 * @param out
+	 *            The array for the mapped values, at least as long as in. It may
+	 *            be the same array as in.
+	 * @return The array out.
+	 */
+	public float[] parallelMapAll(float[] in, float[] out) {
+		return parallelMapAll(in, out, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * The same as parallelMapAll(in, out), but the chunks are mapped by the given
+	 * pool.
+	 */
+	public float[] parallelMapAll(float[] in, float[] out, ForkJoinPool pool) {
+		MapAllTask.invoke(pool, new MapAllTask(this, in, out, 0, in.length));
+		return out;
+	}
+
+	/**
+	 * The parallel version of mapAll(in, out, ratio), mapped by the common
+	 * ForkJoinPool.
+	 */
+	public float[] parallelMapAll(float[] in, float[] out, float ratio) {
+		return parallelMapAll(in, out, ratio, ForkJoinPool.commonPool());
+	}
+
+	public float[] parallelMapAll(float[] in, float[] out, float ratio, ForkJoinPool pool) {
+		if (targetMap == null) {
+			noTargetMap(metrics);
+			return parallelMapAll(in, out, pool);
+		}
+		MapAllTask.invoke(pool, new MapAllTask(this, in, out, ratio, 0, in.length));
+		return out;
+	}
+
+	/**
+	 * The parallel version of mapAll(in, out, ratios), mapped by the common
+	 * ForkJoinPool.
+	 */
+	public float[] parallelMapAll(float[] in, float[] out, float[] ratios) {
+		return parallelMapAll(in, out, ratios, ForkJoinPool.commonPool());
+	}
+
+	public float[] parallelMapAll(float[] in, float[] out, float[] ratios, ForkJoinPool pool) {
+		if (targetMap == null) {
+			noTargetMap(metrics);
+			return parallelMapAll(in, out, pool);
+		}
+		MapAllTask.invoke(pool, new MapAllTask(this, in, out, ratios, 0, in.length));
+		return out;
+	}
+
 	/**
 	 * Creates a map whose precision and therefore type is automatically detected.
 	 * 
@@ -75,7 +320,19 @@ abstract public class Map {
 	 * @return The created map.
 	 */
 	public static Map create(String str) {
-		ComplexMap complexMap = new ComplexMap(str);
+		return create(Parser.parse(str));
+	}
+
+	/**
+	 * Creates a map from an expression, like create(String) but without a string
+	 * to build and parse.
+	 * 
+	 * @param expr
+	 *            The expression, e.g. MapExpr.of(triangle(0.5f)).then(exp(3)).
+	 * @return The created map.
+	 */
+	public static Map create(MapExpr expr) {
+		ComplexMap complexMap = new ComplexMap(expr);
 		// if calculation of the ComplexMap is faster than the calculation of the Graph
 		if (complexMap.isFast()) {
 			return complexMap;
@@ -84,6 +341,31 @@ abstract public class Map {
 		}
 	}
 
+	/**
+	 * Creates a map whose trigonometric steps are approximated with the given
+	 * Accuracy. Like create(String), the type (ComplexMap, Graph) is
+	 * automatically detected, but with approximated steps a ComplexMap is more
+	 * often faster than a Graph.
+	 * 
+	 * @param str
+	 *            The map-defining string
+	 * @param accuracy
+	 *            The Accuracy of the trigonometric steps.
+	 * @return The created map.
+	 */
+	public static Map create(String str, Accuracy accuracy) {
+		return create(Parser.parse(str), accuracy);
+	}
+
+	public static Map create(MapExpr expr, Accuracy accuracy) {
+		ComplexMap complexMap = new ComplexMap(expr, accuracy);
+		if (complexMap.isFast()) {
+			return complexMap;
+		} else {
+			return create(complexMap, Graph.defaultPrecision);
+		}
+	}
+
 	/**
 	 * Creates a map whose precision and therefore type is given.
 	 * 
@@ -94,8 +376,50 @@ abstract public class Map {
 	 * @return The created map.
 	 */
 	public static Map create(String str, Precision precision) {
+		return create(new ComplexMap(str), precision);
+	}
+
+	public static Map create(MapExpr expr, Precision precision) {
+		return create(new ComplexMap(expr), precision);
+	}
+
+	/**
+	 * Creates a map with the smallest number of evenly spaced nodes that is precise
+	 * enough: The distance between the graph and the exact curve is nowhere greater
+	 * than maxError. If no resolution up to Graph.MAX_RESOLUTION is precise enough,
+	 * the exact ComplexMap is returned.
+	 * 
+	 * @param str
+	 *            The map-defining string
+	 * @param maxError
+	 *            The maximum error of the approximation (for normalized input and
+	 *            output).
+	 * @return The created map.
+	 */
+	public static Map create(String str, float maxError) {
 		ComplexMap complexMap = new ComplexMap(str);
-		return create(complexMap, precision);
+		int resolution = Graph.getResolution(complexMap, maxError);
+		if (resolution == 0) {
+			return complexMap;
+		} else {
+			return new Graph(complexMap, resolution);
+		}
+	}
+
+	/**
+	 * Creates a Graph whose nodes are not evenly spaced: Steep regions of the curve
+	 * get more nodes than flat regions, so that the distance between the graph and
+	 * the exact curve is nowhere greater than maxError.
+	 * 
+	 * @param str
+	 *            The map-defining string
+	 * @param maxError
+	 *            The maximum error of the approximation (for normalized input and
+	 *            output).
+	 * @return The created map.
+	 */
+	public static Map createAdaptive(String str, float maxError) {
+		return new AdaptiveGraph(new ComplexMap(str), maxError);
 	}
 
 	/**
@@ -110,6 +434,8 @@ abstract public class Map {
 	private static Map create(ComplexMap complexMap, Precision precision) {
 		if (precision == Precision.Highest) {
 			return complexMap;
+		} else if (precision == Precision.Flat) {
+			return new FlatMap(complexMap);
 		} else {
 			return new Graph(complexMap, precision.resolution);
 		}
@@ -154,7 +480,7 @@ abstract public class Map {
 	}
 
 	public Map setRange(float inputStart, float inputEnd, float outputStart, float outputEnd, RepeatRange inputRepeat) {
-		input.repeat = inputRepeat;
+		input.setRepeat(inputRepeat);
 		return setRange(inputStart, inputEnd, outputStart, outputEnd);
 	}
 
@@ -169,6 +495,90 @@ abstract public class Map {
 		return this;
 	}
 
+	/**
+	 * Creates the inverse of a monotone map, which gets the x for a mapped value
+	 * y. The inverse is a Graph whose nodes are evenly spaced on the y-axis, so a
+	 * lookup takes constant time. Its input range is the output range of this map
+	 * and vice versa. A Graph is inverted with its own resolution, other maps with
+	 * Graph.INVERSE_RESOLUTION.<br>
+	 * The input range of the inverse is not repeated: a y outside the output range
+	 * of this map has no x, so it is limited to the range and reported by
+	 * Range.onExceedRange instead of wrapping around to an unrelated x.<br>
+	 * The target map and later changes of this map are not taken into account.
+	 *
+	 * @return The inverse map.
+	 * @throws IllegalStateException
+	 *             If this map is neither increasing nor decreasing.
+	 */
+	public Map inverse() {
+		int resolution = this instanceof Graph ? ((Graph) this).getResolution() : Graph.INVERSE_RESOLUTION;
+		float[] nodes = Graph.invertNodes(Graph.getNodes(this, resolution), resolution);
+		Map inverse = new Graph(nodes, resolution);
+		inverse.setRange(output.getStart(), output.getEnd(), input.getStart(), input.getEnd(), RepeatRange.No);
+		return inverse;
+	}
+
+	/**
+	 * Creates a cursor which maps the evenly spaced values start, start + step,
+	 * start + 2 * step, ... one after another. The cursor of a Graph steps through
+	 * its lines incrementally, other maps are mapped value by value.
+	 * 
+	 * @param start
+	 *            The first input value.
+	 * @param step
+	 *            The distance between two input values, it may be negative.
+	 * @return The cursor. The ranges of this map must not be changed while it is
+	 *         used.
+	 */
+	public MapCursor cursor(float start, float step) {
+		return new MapCursor(this, start, step);
+	}
+
+	/**
+	 * Creates a lookup table of the mapped values of all integers from inStart to
+	 * inEnd, e.g. 0-255 for 8-bit channels or 0 to cycleLength - 1 for a frame
+	 * counter. The target map and later changes of this map are not taken into
+	 * account.
+	 * 
+	 * @return The Lut, its values are the same as those of map(x).
+	 */
+	public Lut toLut(int inStart, int inEnd) {
+		return new Lut(this, inStart, inEnd);
+	}
+
+	/**
+	 * Counts and logs a call with a ratio, but without a target map.
+	 */
+	static void noTargetMap(MapMetrics metrics) {
+		metrics.blendsWithoutTarget.increment();
+		SampledLog.targetMap.log("No targetMap defined, parameter ratio is ignored.");
+	}
+
+	/**
+	 * @return The metrics of this map. A target map has its own metrics, but it
+	 *         uses the ranges of this map, so values outside them are counted
+	 *         here.
+	 */
+	public MapMetrics getMetrics() {
+		return metrics;
+	}
+
+	Map getTargetMap() {
+		return targetMap;
+	}
+
+	Range getInputRange() {
+		return input;
+	}
+
+	Range getOutputRange() {
+		return output;
+	}
+
+	Range getRatioRange() {
+		return ratioRange;
+	}
+
 	public float getInputStart() {
 		return input.getStart();
 	}
@@ -215,7 +625,11 @@ abstract public class Map {
 	 * 
 	 * @param iterations
 	 *            The number of calculations to perform.
+	 * @deprecated The loop maps one constant value and discards the results, so
+	 *             the JIT compiler can remove most of the work. Use the JMH
+	 *             benchmarks of the module ComplexMappingBenchmark instead.
 	 */
+	@Deprecated
 	public void getPerformance(int iterations) {
 		System.out.println("Elapsed time Map " + iterations + " : " + getMapPerformance(this, iterations) / 1000);
 		if (targetMap != null) {
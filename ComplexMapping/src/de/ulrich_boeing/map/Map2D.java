@@ -0,0 +1,358 @@
+package de.ulrich_boeing.map;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A Map2D is a field f(x, y) built from Maps, e.g. to shade an image or a
+ * gradient:
+ * <ul>
+ * <li>product(mapX, mapY): mapX(x) * mapY(y),</li>
+ * <li>sum(mapX, mapY): mapX(x) + mapY(y),</li>
+ * <li>radial(map, centerX, centerY): map(distance of (x, y) to the
+ * center),</li>
+ * <li>then(map): the values of a Map2D fed through another map.</li>
+ * </ul>
+ * fill() calculates a whole raster of width x height values in one call. The
+ * 1-D maps of product and sum are evaluated once per column and once per row,
+ * so a pixel costs a single multiplication or addition. radial and then() map
+ * each row with mapAll(). parallelFill() calculates the rows in parallel.<br>
+ * <br>
+ * The ranges of the maps define the coordinates, e.g. a map with the input range
+ * (0, width) for the x-axis. A Map2D keeps the given maps, they must not be
+ * changed while a raster is filled.
+ *
+ * <pre>
+ * Map mapX = Map.create("triangle").setRange(0, width, 0, 1);
+ * Map mapY = Map.create("exp 2").setRange(0, height, 0, 255);
+ * float[] raster = Map2D.product(mapX, mapY).fill(new float[width * height], width, height);
+ * </pre>
+ *
+ * @author Ulrich Bing
+ *
+ */
+public abstract class Map2D {
+	// Rasters up to this number of values are filled by the calling thread.
+	private static final int SEQUENTIAL_THRESHOLD = MapAllTask.SEQUENTIAL_THRESHOLD;
+
+	Map2D() {
+	}
+
+	/**
+	 * @return mapX(x) * mapY(y)
+	 */
+	public static Map2D product(Map mapX, Map mapY) {
+		return new Product(mapX, mapY);
+	}
+
+	/**
+	 * @return mapX(x) + mapY(y)
+	 */
+	public static Map2D sum(Map mapX, Map mapY) {
+		return new Sum(mapX, mapY);
+	}
+
+	/**
+	 * @return map(distance), the distance of (x, y) to (centerX, centerY) is the
+	 *         input of the map.
+	 */
+	public static Map2D radial(Map map, float centerX, float centerY) {
+		return new Radial(map, centerX, centerY);
+	}
+
+	/**
+	 * @return map(f(x, y)), with f(x, y) the values of this Map2D.
+	 */
+	public Map2D then(Map map) {
+		return new Composed(this, map);
+	}
+
+	public abstract float map(float x, float y);
+
+	// Calculates the values of the columns, e.g. mapX of all x.
+	abstract float[] getColumns(int x, int width);
+
+	// Calculates the values of the rows, e.g. mapY of all y.
+	abstract float[] getRows(int y, int height);
+
+	/**
+	 * Fills a row of width values starting at offset from the values of the
+	 * columns and of the row.
+	 */
+	abstract void fillRow(float[] out, int offset, float[] columns, float row, int width);
+
+	/**
+	 * Fills a raster with the values of the region from (0, 0) to (width - 1,
+	 * height - 1).
+	 */
+	public float[] fill(float[] out, int width, int height) {
+		return fill(out, 0, 0, width, height);
+	}
+
+	/**
+	 * Fills a raster with the values of a region.
+	 *
+	 * @param out
+	 *            The raster of at least width * height values, row by row.
+	 * @param x
+	 *            The x of the first column.
+	 * @param y
+	 *            The y of the first row.
+	 * @return out
+	 */
+	public float[] fill(float[] out, int x, int y, int width, int height) {
+		new FillTask(this, out, null, getColumns(x, width), getRows(y, height), width, 0, height).fillSequential();
+		return out;
+	}
+
+	/**
+	 * Fills a raster of pixels like fill(float[], int, int, int, int). The values
+	 * are rounded, clamped to 0-255 and stored as opaque gray in the ARGB format,
+	 * like Processing's color(gray). So the output range should be (0, 255).
+	 *
+	 * @return pixels
+	 */
+	public int[] fill(int[] pixels, int x, int y, int width, int height) {
+		new FillTask(this, null, pixels, getColumns(x, width), getRows(y, height), width, 0, height)
+				.fillSequential();
+		return pixels;
+	}
+
+	/**
+	 * Like fill(), but the rows are calculated in parallel by the common
+	 * ForkJoinPool.
+	 */
+	public float[] parallelFill(float[] out, int x, int y, int width, int height) {
+		return parallelFill(out, x, y, width, height, ForkJoinPool.commonPool());
+	}
+
+	public float[] parallelFill(float[] out, int x, int y, int width, int height, ForkJoinPool pool) {
+		invoke(pool, new FillTask(this, out, null, getColumns(x, width), getRows(y, height), width, 0, height));
+		return out;
+	}
+
+	public int[] parallelFill(int[] pixels, int x, int y, int width, int height) {
+		return parallelFill(pixels, x, y, width, height, ForkJoinPool.commonPool());
+	}
+
+	public int[] parallelFill(int[] pixels, int x, int y, int width, int height, ForkJoinPool pool) {
+		invoke(pool, new FillTask(this, null, pixels, getColumns(x, width), getRows(y, height), width, 0, height));
+		return pixels;
+	}
+
+	private static void invoke(ForkJoinPool pool, FillTask task) {
+		if ((long) task.width * task.rowEnd <= SEQUENTIAL_THRESHOLD) {
+			task.fillSequential();
+		} else {
+			pool.invoke(task);
+		}
+	}
+
+	// the input values start, start + 1, ... mapped by map
+	private static float[] mapPositions(Map map, int start, int count) {
+		float[] values = new float[count];
+		for (int i = 0; i < count; i++) {
+			values[i] = start + i;
+		}
+		return map.mapAll(values);
+	}
+
+	/**
+	 * A FillTask fills the rows from rowStart to rowEnd (exclusive). It is split
+	 * in halves until a part has no more than MapAllTask.CHUNK_SIZE values.
+	 */
+	private static final class FillTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Map2D map;
+		// one of both is null
+		private final float[] out;
+		private final int[] pixels;
+		private final float[] columns, rows;
+		private final int width, rowStart, rowEnd;
+
+		FillTask(Map2D map, float[] out, int[] pixels, float[] columns, float[] rows, int width, int rowStart,
+				int rowEnd) {
+			this.map = map;
+			this.out = out;
+			this.pixels = pixels;
+			this.columns = columns;
+			this.rows = rows;
+			this.width = width;
+			this.rowStart = rowStart;
+			this.rowEnd = rowEnd;
+		}
+
+		@Override
+		protected void compute() {
+			int count = rowEnd - rowStart;
+			if (count < 2 || (long) count * width <= MapAllTask.CHUNK_SIZE) {
+				fillSequential();
+			} else {
+				int half = rowStart + count / 2;
+				invokeAll(new FillTask(map, out, pixels, columns, rows, width, rowStart, half),
+						new FillTask(map, out, pixels, columns, rows, width, half, rowEnd));
+			}
+		}
+
+		void fillSequential() {
+			if (out != null) {
+				for (int j = rowStart; j < rowEnd; j++) {
+					map.fillRow(out, j * width, columns, rows[j], width);
+				}
+				return;
+			}
+			float[] row = new float[width];
+			for (int j = rowStart; j < rowEnd; j++) {
+				map.fillRow(row, 0, columns, rows[j], width);
+				int offset = j * width;
+				for (int i = 0; i < width; i++) {
+					int gray = Math.min(255, Math.max(0, Math.round(row[i])));
+					pixels[offset + i] = 0xFF000000 | gray << 16 | gray << 8 | gray;
+				}
+			}
+		}
+	}
+
+	private static final class Product extends Map2D {
+		private final Map mapX, mapY;
+
+		Product(Map mapX, Map mapY) {
+			this.mapX = mapX;
+			this.mapY = mapY;
+		}
+
+		@Override
+		public float map(float x, float y) {
+			return mapX.map(x) * mapY.map(y);
+		}
+
+		@Override
+		float[] getColumns(int x, int width) {
+			return mapPositions(mapX, x, width);
+		}
+
+		@Override
+		float[] getRows(int y, int height) {
+			return mapPositions(mapY, y, height);
+		}
+
+		@Override
+		void fillRow(float[] out, int offset, float[] columns, float row, int width) {
+			for (int i = 0; i < width; i++) {
+				out[offset + i] = columns[i] * row;
+			}
+		}
+	}
+
+	private static final class Sum extends Map2D {
+		private final Map mapX, mapY;
+
+		Sum(Map mapX, Map mapY) {
+			this.mapX = mapX;
+			this.mapY = mapY;
+		}
+
+		@Override
+		public float map(float x, float y) {
+			return mapX.map(x) + mapY.map(y);
+		}
+
+		@Override
+		float[] getColumns(int x, int width) {
+			return mapPositions(mapX, x, width);
+		}
+
+		@Override
+		float[] getRows(int y, int height) {
+			return mapPositions(mapY, y, height);
+		}
+
+		@Override
+		void fillRow(float[] out, int offset, float[] columns, float row, int width) {
+			for (int i = 0; i < width; i++) {
+				out[offset + i] = columns[i] + row;
+			}
+		}
+	}
+
+	/*
+	 * The squared distances to the center are calculated once per column and once
+	 * per row, so a pixel costs an addition and a square root before the row is
+	 * mapped.
+	 */
+	private static final class Radial extends Map2D {
+		private final Map map;
+		private final float centerX, centerY;
+
+		Radial(Map map, float centerX, float centerY) {
+			this.map = map;
+			this.centerX = centerX;
+			this.centerY = centerY;
+		}
+
+		@Override
+		public float map(float x, float y) {
+			float dx = x - centerX, dy = y - centerY;
+			return map.map((float) Math.sqrt(dx * dx + dy * dy));
+		}
+
+		@Override
+		float[] getColumns(int x, int width) {
+			return getSquares(x, width, centerX);
+		}
+
+		@Override
+		float[] getRows(int y, int height) {
+			return getSquares(y, height, centerY);
+		}
+
+		private static float[] getSquares(int start, int count, float center) {
+			float[] squares = new float[count];
+			for (int i = 0; i < count; i++) {
+				float d = start + i - center;
+				squares[i] = d * d;
+			}
+			return squares;
+		}
+
+		@Override
+		void fillRow(float[] out, int offset, float[] columns, float row, int width) {
+			for (int i = 0; i < width; i++) {
+				out[offset + i] = (float) Math.sqrt(columns[i] + row);
+			}
+			map.mapAll(out, offset, out, offset, width);
+		}
+	}
+
+	private static final class Composed extends Map2D {
+		private final Map2D inner;
+		private final Map map;
+
+		Composed(Map2D inner, Map map) {
+			this.inner = inner;
+			this.map = map;
+		}
+
+		@Override
+		public float map(float x, float y) {
+			return map.map(inner.map(x, y));
+		}
+
+		@Override
+		float[] getColumns(int x, int width) {
+			return inner.getColumns(x, width);
+		}
+
+		@Override
+		float[] getRows(int y, int height) {
+			return inner.getRows(y, height);
+		}
+
+		@Override
+		void fillRow(float[] out, int offset, float[] columns, float row, int width) {
+			inner.fillRow(out, offset, columns, row, width);
+			map.mapAll(out, offset, out, offset, width);
+		}
+	}
+}
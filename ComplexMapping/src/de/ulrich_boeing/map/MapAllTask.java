@@ -0,0 +1,89 @@
+package de.ulrich_boeing.map;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A MapAllTask maps a part of an array by one of the mapAll methods of a Map.
+ * It is split in halves until a part is not longer than CHUNK_SIZE, so the
+ * parts are mapped in parallel by a ForkJoinPool.<br>
+ * Each value is mapped by the same sequential code as in mapAll, so the results
+ * are the same as those of map(x) and map(x, ratio).
+ *
+ * @author Ulrich Bing
+ *
+ */
+final class MapAllTask extends RecursiveAction {
+	private static final long serialVersionUID = 1L;
+
+	/*
+	 * The number of values of a task that is not split further. A multiple of
+	 * Map.BLOCK_SIZE, its in and out values (128 KB) fit into a second level
+	 * cache.
+	 */
+	static final int CHUNK_SIZE = 1 << 14;
+	// Arrays up to this length are mapped sequentially by the calling thread.
+	static final int SEQUENTIAL_THRESHOLD = 1 << 16;
+
+	private final Map map;
+	private final float[] in, out;
+	// null if all values have the same ratio
+	private final float[] ratios;
+	private final float ratio;
+	private final boolean blend;
+	private final int offset, length;
+
+	MapAllTask(Map map, float[] in, float[] out, int offset, int length) {
+		this(map, in, out, null, 0, false, offset, length);
+	}
+
+	MapAllTask(Map map, float[] in, float[] out, float ratio, int offset, int length) {
+		this(map, in, out, null, ratio, true, offset, length);
+	}
+
+	MapAllTask(Map map, float[] in, float[] out, float[] ratios, int offset, int length) {
+		this(map, in, out, ratios, 0, true, offset, length);
+	}
+
+	private MapAllTask(Map map, float[] in, float[] out, float[] ratios, float ratio, boolean blend, int offset,
+			int length) {
+		this.map = map;
+		this.in = in;
+		this.out = out;
+		this.ratios = ratios;
+		this.ratio = ratio;
+		this.blend = blend;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	static void invoke(ForkJoinPool pool, MapAllTask task) {
+		if (task.length <= SEQUENTIAL_THRESHOLD) {
+			task.mapSequential();
+		} else {
+			pool.invoke(task);
+		}
+	}
+
+	@Override
+	protected void compute() {
+		if (length <= CHUNK_SIZE) {
+			mapSequential();
+		} else {
+			// split at a multiple of CHUNK_SIZE, so all parts but the last are full
+			int half = (length / CHUNK_SIZE + 1) / 2 * CHUNK_SIZE;
+			invokeAll(new MapAllTask(map, in, out, ratios, ratio, blend, offset, half),
+					new MapAllTask(map, in, out, ratios, ratio, blend, offset + half, length - half));
+		}
+	}
+
+	private void mapSequential() {
+		if (!blend) {
+			map.mapAll(in, offset, out, offset, length);
+		} else if (ratios == null) {
+			map.mapAll(in, offset, out, offset, length, ratio);
+		} else {
+			map.mapAll(in, out, ratios, offset, length);
+		}
+	}
+}
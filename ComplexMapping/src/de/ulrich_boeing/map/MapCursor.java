@@ -0,0 +1,67 @@
+package de.ulrich_boeing.map;
+
+/**
+ * A MapCursor maps evenly spaced input values one after another, e.g. every
+ * pixel column or every tick of an animation. It is created by Map.cursor(start,
+ * step):
+ *
+ * <pre>
+ * MapCursor cursor = map.cursor(0, 1);
+ * for (int x = 0; x &lt; width; x++) {
+ * 	vertex(x, cursor.next());
+ * }
+ * </pre>
+ *
+ * The input values are start + i * step, calculated in double, so they don't
+ * drift by adding up the step. This class maps each value by Map.map(), the
+ * cursor of a Graph steps incrementally through its lines.<br>
+ * A MapCursor is not thread-safe.
+ *
+ * @author Ulrich Bing
+ *
+ */
+public class MapCursor {
+	private final Map map;
+	final double start, step;
+	// the number of values already mapped
+	long index;
+
+	MapCursor(Map map, float start, float step) {
+		this.map = map;
+		this.start = start;
+		this.step = step;
+	}
+
+	/**
+	 * @return The input value of the next call of next().
+	 */
+	public float getX() {
+		return (float) (start + index * step);
+	}
+
+	/**
+	 * Maps the current input value and moves to the next one.
+	 */
+	public float next() {
+		float x = getX();
+		index++;
+		return map.map(x);
+	}
+
+	public float[] fill(float[] out, int n) {
+		return fill(out, 0, n);
+	}
+
+	/**
+	 * Maps the next n input values, like n calls of next().
+	 *
+	 * @return out
+	 */
+	public float[] fill(float[] out, int offset, int n) {
+		for (int j = 0; j < n; j++) {
+			out[offset + j] = getX();
+			index++;
+		}
+		return map.mapAll(out, offset, out, offset, n);
+	}
+}
@@ -0,0 +1,150 @@
+package de.ulrich_boeing.map;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A MapExpr is the parsed form of a map-defining string: one or more Mappings,
+ * each a sequence of StepExprs. It is the common structure of the Parser, the
+ * MapGenerator and Map.create(MapExpr), so a map can be built without creating
+ * and parsing a string. The Optimizer, the Graph sampling and the FlatMap don't
+ * work on a MapExpr, but on the Mappings and Steps which are created from it.<br>
+ * A MapExpr is immutable, then() and and() return a new MapExpr. A 'weight'
+ * step must be the last step of its Mapping:
+ *
+ * <pre>
+ * // 'triangle 0.5 > invert > exp 3 & sin'
+ * MapExpr expr = MapExpr.of(triangle(0.5f)).then(invert()).then(exp(3)).and(sin());
+ * Map map = Map.create(expr);
+ * </pre>
+ *
+ * @author Ulrich Bing
+ *
+ */
+public final class MapExpr {
+	private final StepExpr[][] mappings;
+
+	MapExpr(StepExpr[][] mappings) {
+		for (StepExpr[] steps : mappings) {
+			checkWeight(steps);
+		}
+		this.mappings = mappings;
+	}
+
+	private static void checkWeight(StepExpr[] steps) {
+		for (int i = 0; i < steps.length - 1; i++) {
+			if (steps[i].type == StepType.weight) {
+				String msg = "Weight must be the last step of a mapping: '" + toString(steps) + "'";
+				throw new IllegalArgumentException(msg);
+			}
+		}
+	}
+
+	/**
+	 * @return A MapExpr with a single Mapping of the given steps.
+	 */
+	public static MapExpr of(StepExpr... steps) {
+		if (steps.length == 0) {
+			steps = new StepExpr[] { StepExpr.x() };
+		}
+		return new MapExpr(new StepExpr[][] { steps.clone() });
+	}
+
+	/**
+	 * Parses a map-defining string.
+	 */
+	public static MapExpr parse(String str) {
+		return Parser.parse(str);
+	}
+
+	/**
+	 * @return A new MapExpr with the step appended to the last Mapping ('>').
+	 * @throws IllegalArgumentException
+	 *             If the last Mapping already ends with a 'weight' step.
+	 */
+	public MapExpr then(StepExpr step) {
+		StepExpr[][] mappings = this.mappings.clone();
+		int last = mappings.length - 1;
+		mappings[last] = Arrays.copyOf(mappings[last], mappings[last].length + 1);
+		mappings[last][mappings[last].length - 1] = step;
+		return new MapExpr(mappings);
+	}
+
+	/**
+	 * @return A new MapExpr with a new Mapping of the given steps ('&').
+	 */
+	public MapExpr and(StepExpr... steps) {
+		return and(of(steps));
+	}
+
+	/**
+	 * @return A new MapExpr with the Mappings of both expressions.
+	 */
+	public MapExpr and(MapExpr expr) {
+		StepExpr[][] mappings = Arrays.copyOf(this.mappings, this.mappings.length + expr.mappings.length);
+		System.arraycopy(expr.mappings, 0, mappings, this.mappings.length, expr.mappings.length);
+		return new MapExpr(mappings);
+	}
+
+	/**
+	 * @return The Mappings, each an unmodifiable list of its steps.
+	 */
+	public List<List<StepExpr>> getMappings() {
+		ArrayList<List<StepExpr>> list = new ArrayList<>(mappings.length);
+		for (StepExpr[] steps : mappings) {
+			list.add(Collections.unmodifiableList(Arrays.asList(steps)));
+		}
+		return Collections.unmodifiableList(list);
+	}
+
+	Mapping[] toMappings() {
+		Mapping[] result = new Mapping[mappings.length];
+		for (int i = 0; i < mappings.length; i++) {
+			Step[] steps = new Step[mappings[i].length];
+			for (int j = 0; j < steps.length; j++) {
+				steps[j] = mappings[i][j].toStep();
+			}
+			result[i] = new Mapping(steps);
+		}
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof MapExpr && Arrays.deepEquals(mappings, ((MapExpr) obj).mappings);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.deepHashCode(mappings);
+	}
+
+	/**
+	 * @return The expression as a map-defining string, with the parameters as
+	 *         given.
+	 */
+	@Override
+	public String toString() {
+		String str = "";
+		for (int i = 0; i < mappings.length; i++) {
+			str += toString(mappings[i]);
+			if (i < mappings.length - 1) {
+				str += " & ";
+			}
+		}
+		return str;
+	}
+
+	private static String toString(StepExpr[] steps) {
+		String str = "";
+		for (int j = 0; j < steps.length; j++) {
+			str += steps[j].toString();
+			if (j < steps.length - 1) {
+				str += " > ";
+			}
+		}
+		return str;
+	}
+}
@@ -1,55 +1,83 @@
 package de.ulrich_boeing.map;
 
 import java.util.List;
+import java.util.SplittableRandom;
+
 import static java.util.Arrays.asList;
 
+/**
+ * The MapGenerator creates random maps as MapExprs, which can be created by
+ * Map.create(MapExpr) without building and parsing a string, or as
+ * map-defining strings. A MapGenerator with a seed creates the same sequence of
+ * maps each time.<br>
+ * <br>
+ * A MapGenerator is not thread-safe. Each thread should use its own, e.g. one
+ * created by split(), so the threads don't contend for a shared Random like
+ * Math.random().
+ */
 public class MapGenerator {
+	private static final StepType[] types = StepType.values();
+
+	private final SplittableRandom random;
 	List<StepType> exclude;
 	int numSteps, maxSteps;
-	int probabilityAnd; 
-	
+	int probabilityAnd;
+
 	public MapGenerator() {
+		this(new SplittableRandom());
+	}
+
+	public MapGenerator(long seed) {
+		this(new SplittableRandom(seed));
+	}
+
+	private MapGenerator(SplittableRandom random) {
+		this.random = random;
+	}
+
+	/**
+	 * @return A new MapGenerator for another thread. Its strings are
+	 *         reproducible, if this MapGenerator has a seed.
+	 */
+	public MapGenerator split() {
+		return new MapGenerator(random.split());
 	}
 
 	private void initParameter() {
 		exclude = asList(StepType.x, StepType.constant, StepType.weight, StepType.random, StepType.squarerandom);
 		maxSteps = 5;
-		numSteps = (int) (Math.random() * maxSteps) + 1;
+		numSteps = random.nextInt(maxSteps) + 1;
 		probabilityAnd = 4;
 	}
-	
-	public String getRandomDefString() {
+
+	public MapExpr getRandomExpr() {
 		initParameter();
 
-		String defString = "";
-		for (int i = 1; i <= numSteps; i++) {
-			defString += getRandomStep().toString();
-			if (i < numSteps) {
-				defString += getRandomSeparator();
+		MapExpr expr = MapExpr.of(getRandomStep());
+		for (int i = 2; i <= numSteps; i++) {
+			if (oneOf(probabilityAnd)) {
+				expr = expr.and(getRandomStep());
+			} else {
+				expr = expr.then(getRandomStep());
 			}
 		}
-		return defString;
+		return expr;
+	}
+
+	public String getRandomDefString() {
+		return getRandomExpr().toString();
 	}
-	
-	private StepType getRandomStep() {
-		StepType step;
+
+	// a step with the default parameters
+	private StepExpr getRandomStep() {
+		StepType type;
 		do {
-			int i = (int) (Math.random() * StepType.values().length);
-			step = StepType.values()[i];
-		} while (exclude.contains(step));
-		return step;
-	}
-	
-	private String getRandomSeparator() {
-		if (oneOf(probabilityAnd)) {
-			return " & ";
-		} else {
-			return " > ";
-		}
-		
+			type = types[random.nextInt(types.length)];
+		} while (exclude.contains(type));
+		return new StepExpr(type);
 	}
-	
-	private static boolean oneOf(int i) {
-		return (Math.random() * i) < 1;
+
+	private boolean oneOf(int i) {
+		return random.nextInt(i) == 0;
 	}
 }
@@ -0,0 +1,167 @@
+package de.ulrich_boeing.map;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The MapMetrics of a map count
+ * <ul>
+ * <li>evaluations: mapped values, only after setCountEvaluations(true),</li>
+ * <li>belowRange, aboveRange: values below or above the input or output
+ * Range,</li>
+ * <li>blendsWithoutTarget: calls with a ratio, but without a target map.</li>
+ * </ul>
+ * The counters are LongAdders, so threads mapping with the same map don't
+ * contend. They can be read by snapshot() or by JMX after register().
+ *
+ * @author Ulrich Bing
+ *
+ */
+public final class MapMetrics implements MapMetricsMXBean {
+	/*
+	 * Counting every evaluation costs a few nanoseconds per call, so it is off by
+	 * default. The rare events are always counted. Volatile, so a change is seen
+	 * by the threads which are already mapping.
+	 */
+	private static volatile boolean countEvaluations = false;
+
+	final LongAdder evaluations = new LongAdder();
+	final LongAdder belowRange = new LongAdder();
+	final LongAdder aboveRange = new LongAdder();
+	final LongAdder blendsWithoutTarget = new LongAdder();
+
+	private ObjectName name;
+
+	MapMetrics() {
+	}
+
+	/**
+	 * Switches the counting of evaluations on or off for all maps.
+	 */
+	public static void setCountEvaluations(boolean count) {
+		countEvaluations = count;
+	}
+
+	public static boolean isCountEvaluations() {
+		return countEvaluations;
+	}
+
+	void countEvaluations(int count) {
+		if (countEvaluations) {
+			evaluations.add(count);
+		}
+	}
+
+	@Override
+	public long getEvaluations() {
+		return evaluations.sum();
+	}
+
+	@Override
+	public long getBelowRange() {
+		return belowRange.sum();
+	}
+
+	@Override
+	public long getAboveRange() {
+		return aboveRange.sum();
+	}
+
+	@Override
+	public long getBlendsWithoutTarget() {
+		return blendsWithoutTarget.sum();
+	}
+
+	@Override
+	public void reset() {
+		evaluations.reset();
+		belowRange.reset();
+		aboveRange.reset();
+		blendsWithoutTarget.reset();
+	}
+
+	/**
+	 * @return The current values of all counters. While other threads are mapping
+	 *         the counters are not read at exactly the same moment.
+	 */
+	public Snapshot snapshot() {
+		return new Snapshot(getEvaluations(), getBelowRange(), getAboveRange(), getBlendsWithoutTarget());
+	}
+
+	/**
+	 * Registers the metrics at the platform MBeanServer with the ObjectName
+	 * 'de.ulrich_boeing.map:type=MapMetrics,name=&lt;name&gt;'.
+	 *
+	 * @param name
+	 *            The name of the map, unique among all registered maps.
+	 */
+	public synchronized void register(String name) {
+		unregister();
+		try {
+			ObjectName objectName = new ObjectName("de.ulrich_boeing.map:type=MapMetrics,name=" + ObjectName.quote(name));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+			this.name = objectName;
+		} catch (JMException e) {
+			throw new IllegalArgumentException("MapMetrics '" + name + "' could not be registered.", e);
+		}
+	}
+
+	public synchronized void unregister() {
+		if (name != null) {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			try {
+				if (server.isRegistered(name)) {
+					server.unregisterMBean(name);
+				}
+			} catch (JMException e) {
+				throw new IllegalStateException("MapMetrics '" + name + "' could not be unregistered.", e);
+			}
+			name = null;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return snapshot().toString();
+	}
+
+	/**
+	 * The values of all counters of a MapMetrics at one time.
+	 */
+	public static final class Snapshot {
+		private final long evaluations, belowRange, aboveRange, blendsWithoutTarget;
+
+		Snapshot(long evaluations, long belowRange, long aboveRange, long blendsWithoutTarget) {
+			this.evaluations = evaluations;
+			this.belowRange = belowRange;
+			this.aboveRange = aboveRange;
+			this.blendsWithoutTarget = blendsWithoutTarget;
+		}
+
+		public long getEvaluations() {
+			return evaluations;
+		}
+
+		public long getBelowRange() {
+			return belowRange;
+		}
+
+		public long getAboveRange() {
+			return aboveRange;
+		}
+
+		public long getBlendsWithoutTarget() {
+			return blendsWithoutTarget;
+		}
+
+		@Override
+		public String toString() {
+			return "MapMetrics: evaluations = " + evaluations + ", belowRange = " + belowRange + ", aboveRange = "
+					+ aboveRange + ", blendsWithoutTarget = " + blendsWithoutTarget;
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package de.ulrich_boeing.map;
+
+/**
+ * The JMX interface of MapMetrics.
+ *
+ * @author Ulrich Bing
+ *
+ */
+public interface MapMetricsMXBean {
+	long getEvaluations();
+
+	long getBelowRange();
+
+	long getAboveRange();
+
+	long getBlendsWithoutTarget();
+
+	void reset();
+}
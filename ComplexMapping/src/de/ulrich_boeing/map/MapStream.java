@@ -0,0 +1,215 @@
+package de.ulrich_boeing.map;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * MapStream maps files of little-endian float32 samples, which can be larger
+ * than the heap. The files are memory-mapped in windows of WINDOW_SIZE bytes,
+ * each window is mapped in blocks of BLOCK_SIZE samples by mapAll(). So the
+ * heap holds only one or two blocks, and each sample is read and written
+ * once.<br>
+ * <br>
+ * With a ratio file (one float32 per sample) the samples are blended into the
+ * target map like Map.map(x, ratio).<br>
+ * <br>
+ * Command line:
+ *
+ * <pre>
+ * java de.ulrich_boeing.map.MapStream definition in out [-range inStart inEnd outStart outEnd]
+ *         [-target definition (-ratio value | -ratios file)]
+ * </pre>
+ *
+ * @author Ulrich Bing
+ *
+ */
+public final class MapStream {
+	// bytes of a memory-mapped window, a multiple of 4
+	static final int WINDOW_SIZE = 1 << 26;
+	/*
+	 * Samples per call of mapAll(). The block and its ratios (64 KB) fit into a
+	 * second level cache.
+	 */
+	static final int BLOCK_SIZE = 1 << 13;
+
+	private MapStream() {
+	}
+
+	/**
+	 * Maps all samples of a file like Map.map(x).
+	 *
+	 * @param in
+	 *            The samples.
+	 * @param out
+	 *            The mapped samples, the file is created or overwritten. It may be
+	 *            the same file as in.
+	 */
+	public static Report map(Map map, File in, File out) throws IOException {
+		return map(map, in, null, false, 0, out);
+	}
+
+	/**
+	 * Maps all samples of a file like Map.map(x, ratio) with the same ratio.
+	 */
+	public static Report map(Map map, File in, float ratio, File out) throws IOException {
+		return map(map, in, null, true, ratio, out);
+	}
+
+	/**
+	 * Maps all samples of a file like Map.map(x, ratio), with a ratio per sample.
+	 *
+	 * @param ratios
+	 *            A file with as many ratios as in has samples.
+	 */
+	public static Report map(Map map, File in, File ratios, File out) throws IOException {
+		if (ratios == null) {
+			throw new IllegalArgumentException("The ratio file is null.");
+		}
+		return map(map, in, ratios, true, 0, out);
+	}
+
+	private static Report map(Map map, File in, File ratios, boolean blend, float ratio, File out)
+			throws IOException {
+		long start = System.nanoTime();
+		try (RandomAccessFile inFile = new RandomAccessFile(in, "r");
+				RandomAccessFile ratioFile = ratios == null ? null : new RandomAccessFile(ratios, "r");
+				RandomAccessFile outFile = new RandomAccessFile(out, "rw")) {
+			FileChannel inChannel = inFile.getChannel();
+			FileChannel ratioChannel = ratioFile == null ? null : ratioFile.getChannel();
+			FileChannel outChannel = outFile.getChannel();
+
+			long size = inChannel.size();
+			if (size % 4 != 0) {
+				throw new IOException("'" + in + "' has " + size + " bytes, which are no float32 samples.");
+			}
+			if (ratioChannel != null && ratioChannel.size() != size) {
+				throw new IOException("'" + ratios + "' has " + ratioChannel.size() + " bytes, but '" + in + "' has "
+						+ size + ".");
+			}
+			if (!in.getCanonicalFile().equals(out.getCanonicalFile())) {
+				outFile.setLength(size);
+			}
+
+			float[] block = new float[BLOCK_SIZE];
+			float[] ratioBlock = ratioChannel == null ? null : new float[BLOCK_SIZE];
+			for (long position = 0; position < size; position += WINDOW_SIZE) {
+				long windowSize = Math.min(WINDOW_SIZE, size - position);
+				FloatBuffer inBuffer = window(inChannel, FileChannel.MapMode.READ_ONLY, position, windowSize);
+				FloatBuffer outBuffer = window(outChannel, FileChannel.MapMode.READ_WRITE, position, windowSize);
+				FloatBuffer ratioBuffer = ratioChannel == null ? null
+						: window(ratioChannel, FileChannel.MapMode.READ_ONLY, position, windowSize);
+
+				while (inBuffer.hasRemaining()) {
+					int n = Math.min(BLOCK_SIZE, inBuffer.remaining());
+					inBuffer.get(block, 0, n);
+					if (ratioBuffer != null) {
+						ratioBuffer.get(ratioBlock, 0, n);
+						mapAll(map, block, ratioBlock, n);
+					} else if (blend) {
+						map.mapAll(block, 0, block, 0, n, ratio);
+					} else {
+						map.mapAll(block, 0, block, 0, n);
+					}
+					outBuffer.put(block, 0, n);
+				}
+			}
+		}
+		return new Report(in.length() / 4, System.nanoTime() - start);
+	}
+
+	private static FloatBuffer window(FileChannel channel, FileChannel.MapMode mode, long position, long size)
+			throws IOException {
+		return channel.map(mode, position, size).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+	}
+
+	// like Map.mapAll(in, out, ratios), but only the first n values
+	private static void mapAll(Map map, float[] block, float[] ratios, int n) {
+		if (map.getTargetMap() == null) {
+			Map.noTargetMap(map.getMetrics());
+			map.mapAll(block, 0, block, 0, n);
+		} else {
+			map.mapAll(block, block, ratios, 0, n);
+		}
+	}
+
+	/**
+	 * The number of mapped samples and the time it took.
+	 */
+	public static final class Report {
+		private final long samples, nanos;
+
+		Report(long samples, long nanos) {
+			this.samples = samples;
+			this.nanos = nanos;
+		}
+
+		public long getSamples() {
+			return samples;
+		}
+
+		public long getNanos() {
+			return nanos;
+		}
+
+		public double getSamplesPerSecond() {
+			return nanos == 0 ? 0 : samples * 1e9 / nanos;
+		}
+
+		// bytes of input samples per second
+		public double getBytesPerSecond() {
+			return getSamplesPerSecond() * 4;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d samples in %.1f ms: %.1f million samples/s, %.1f MB/s", samples, nanos / 1e6,
+					getSamplesPerSecond() / 1e6, getBytesPerSecond() / 1e6);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			System.err.println("Usage: MapStream definition in out [-range inStart inEnd outStart outEnd]"
+					+ " [-target definition (-ratio value | -ratios file)]");
+			System.exit(1);
+		}
+		Map map = Map.create(args[0]);
+		File in = new File(args[1]);
+		File out = new File(args[2]);
+		File ratios = null;
+		Float ratio = null;
+		for (int i = 3; i < args.length; i++) {
+			switch (args[i]) {
+			case "-range":
+				map.setRange(Float.parseFloat(args[++i]), Float.parseFloat(args[++i]), Float.parseFloat(args[++i]),
+						Float.parseFloat(args[++i]));
+				break;
+			case "-target":
+				map.setTargetMap(args[++i]);
+				break;
+			case "-ratio":
+				ratio = Float.parseFloat(args[++i]);
+				break;
+			case "-ratios":
+				ratios = new File(args[++i]);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option '" + args[i] + "'.");
+			}
+		}
+
+		Report report;
+		if (ratios != null) {
+			report = map(map, in, ratios, out);
+		} else if (ratio != null) {
+			report = map(map, in, ratio, out);
+		} else {
+			report = map(map, in, out);
+		}
+		System.out.println(report);
+	}
+}
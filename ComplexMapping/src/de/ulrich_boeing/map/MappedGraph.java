@@ -0,0 +1,66 @@
+package de.ulrich_boeing.map;
+
+import java.nio.FloatBuffer;
+
+/**
+ * A MappedGraph is a Graph of a GraphBank, whose nodes are read from the
+ * memory-mapped file instead of a float array on the heap. The nodes have the
+ * layout of Graph.calculateNodes().<br>
+ * <br>
+ * map(x), mapAll() and cursor() use the GraphKernel of Graph with the nodes of
+ * the buffer, so the results are exactly those of a Graph with the same nodes
+ * and ranges. normMap() has the same expression as that of Graph, it only
+ * reads the nodes from the buffer. Transition and inverse() reuse the nodes
+ * like those of a Graph, they are copied from the buffer.
+ *
+ * @author Ulrich Bing
+ *
+ */
+class MappedGraph extends Graph {
+	private final FloatBuffer nodes;
+
+	MappedGraph(FloatBuffer nodes, int resolution) {
+		super(resolution);
+		this.nodes = nodes;
+		setMinMax();
+	}
+
+	@Override
+	GraphKernel createKernel(Range input, Range output) {
+		return new GraphKernel.BufferKernel(nodes, getResolution(), input, output);
+	}
+
+	@Override
+	float getNode(int i) {
+		return nodes.get(i);
+	}
+
+	@Override
+	float[] getNodeArray() {
+		float[] array = new float[getResolution() + 2];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = nodes.get(i);
+		}
+		return array;
+	}
+
+	@Override
+	float normMap(float x) {
+		// the same as Graph.normMap()
+		float section = x * getResolution();
+		int i = (int) section;
+		return nodes.get(i) + (section - i) * (nodes.get(i + 1) - nodes.get(i));
+	}
+
+	@Override
+	void normMapAll(float[] x, int offset, int length) {
+		for (int j = offset; j < offset + length; j++) {
+			x[j] = normMap(x[j]);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Mapped" + super.toString();
+	}
+}
@@ -3,7 +3,7 @@ package de.ulrich_boeing.map;
 /**
  * The class Mapping is a sequence of steps,
  * the output of one step is the input of the subsequent step.<br>
- * A Mapping is built with a string in the form "triangle > invert > exp 3".<br><br>
+ * A Mapping is defined by a string in the form "triangle > invert > exp 3".<br><br>
  * 
  *  If more than one mapping is combined in a ComplexMap weight is needed.<br>
  * Input for the normMap method must be between 0-1 and so must be output.
@@ -13,18 +13,8 @@ class Mapping {
 	Step[] steps;
 	float weight;
 
-	Mapping(String str) {
-		build(str);
-	}
-
-	private void build(String str) {
-		String[] arr = str.split("\\s*>\\s*");
-
-		int countSteps = arr.length;
-		steps = new Step[countSteps];
-		for (int i = 0; i < countSteps; i++) {
-			steps[i] = new Step(arr[i]);
-		}
+	Mapping(Step[] steps) {
+		this.steps = steps;
 		setWeight();
 	}
 
@@ -51,6 +41,13 @@ class Mapping {
 		return x;
 	}
 
+	// Runs every step over the whole block before the next step starts.
+	protected void normMapAll(float[] x, int offset, int length) {
+		for (Step step : steps) {
+			step.normMapAll(x, offset, length);
+		}
+	}
+
 	@Override
 	public String toString() {
 		String str = "";
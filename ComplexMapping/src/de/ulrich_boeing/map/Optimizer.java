@@ -0,0 +1,174 @@
+package de.ulrich_boeing.map;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The Optimizer rewrites the steps of a parsed ComplexMap into cheaper
+ * equivalents before the map is evaluated. The results of the optimized map are
+ * the same as the results of the unoptimized map, apart from float rounding. (A
+ * rounding difference can move the jump of a following 'repeat' by one float
+ * step.)<br>
+ * <br>
+ * Rewrites of the steps of a Mapping:
+ * <ul>
+ * <li>'x', 'exp 1' and 'weight 1' are removed.</li>
+ * <li>'invert > invert' is removed.</li>
+ * <li>'invert > exp a > invert' is replaced with 'exp -a'.</li>
+ * <li>'exp a > exp b' is replaced with 'exp a*b', if a and b have the same
+ * sign.</li>
+ * <li>'repeat a > repeat b' is replaced with 'repeat a*b', if b is an
+ * integer.</li>
+ * <li>'narrow p0 p1 > narrow q0 q1' is replaced with a single narrow, if q0 and
+ * q1 are inside 0-1.</li>
+ * <li>All steps before a 'constant' are removed, steps after a 'constant' are
+ * calculated once and folded into the constant.</li>
+ * </ul>
+ * If all Mappings of a ComplexMap have the same weight, the weights cancel out
+ * in the normalization of the ComplexMap and the weight steps are removed.
+ *
+ */
+class Optimizer {
+
+	private Optimizer() {
+	}
+
+	static void optimize(ComplexMap complexMap) {
+		for (Mapping mapping : complexMap.mappings) {
+			mapping.steps = optimize(mapping.steps);
+		}
+		collapseWeights(complexMap.mappings);
+	}
+
+	/**
+	 * Rewrites a sequence of steps until no rule can be applied anymore.
+	 *
+	 * @param steps
+	 *            The steps of a Mapping, a weight step can only be the last step.
+	 * @return The optimized steps, at least one step.
+	 */
+	static Step[] optimize(Step[] steps) {
+		ArrayList<Step> list = new ArrayList<>();
+		Step weight = null;
+		for (Step step : steps) {
+			if (step.type == StepType.weight) {
+				weight = step;
+			} else {
+				list.add(step);
+			}
+		}
+
+		boolean changed;
+		do {
+			changed = rewrite(list);
+		} while (changed);
+
+		if (weight != null && weight.p[0] != 1) {
+			list.add(weight);
+		}
+		if (list.isEmpty()) {
+			list.add(new Step(StepType.x, new float[] {}));
+		}
+		return list.toArray(new Step[list.size()]);
+	}
+
+	/**
+	 * Applies the first rule that matches somewhere in the list.
+	 *
+	 * @return true if the list has been changed.
+	 */
+	private static boolean rewrite(ArrayList<Step> list) {
+		for (int i = 0; i < list.size(); i++) {
+			Step step = list.get(i);
+			Step next = i + 1 < list.size() ? list.get(i + 1) : null;
+
+			// identity steps
+			if (step.type == StepType.x || (step.type == StepType.exp && step.p[0] == 1)) {
+				list.remove(i);
+				return true;
+			}
+
+			// all steps before a constant don't have any effect
+			if (step.type == StepType.constant && i > 0) {
+				list.subList(0, i).clear();
+				return true;
+			}
+
+			if (next == null) {
+				continue;
+			}
+
+			// fold the step after a constant into the constant
+			if (step.type == StepType.constant) {
+				float value = next.normMap(step.p[0]);
+				list.set(i, new Step(StepType.constant, new float[] { value }));
+				list.remove(i + 1);
+				return true;
+			}
+
+			if (step.type == StepType.invert && next.type == StepType.invert) {
+				list.subList(i, i + 2).clear();
+				return true;
+			}
+
+			// 1 - (1 - x)^a
+			if (step.type == StepType.invert && next.type == StepType.exp && i + 2 < list.size()
+					&& list.get(i + 2).type == StepType.invert) {
+				list.subList(i, i + 3).clear();
+				list.add(i, new Step(StepType.exp, new float[] { -next.p[0] }));
+				return true;
+			}
+
+			// (x^a)^b = x^(a*b), the same for the rotated curves of negative exponents
+			if (step.type == StepType.exp && next.type == StepType.exp && (step.p[0] < 0) == (next.p[0] < 0)) {
+				float e = Math.abs(step.p[0]) * Math.abs(next.p[0]);
+				replace(list, i, new Step(StepType.exp, new float[] { step.p[0] < 0 ? -e : e }));
+				return true;
+			}
+
+			// ((x * a) % 1 * b) % 1 = (x * a * b) % 1, if b is an integer
+			if (step.type == StepType.repeat && next.type == StepType.repeat && next.p[0] == (int) next.p[0]) {
+				float factor = step.p[0] * next.p[0];
+				if (factor != 1) {
+					replace(list, i, new Step(StepType.repeat, new float[] { factor }));
+					return true;
+				}
+			}
+
+			if (step.type == StepType.narrow && next.type == StepType.narrow && step.p[0] < step.p[1]
+					&& 0 <= next.p[0] && next.p[0] < next.p[1] && next.p[1] <= 1) {
+				float width = step.p[1] - step.p[0];
+				float start = step.p[0] + next.p[0] * width;
+				float end = step.p[0] + next.p[1] * width;
+				replace(list, i, new Step(StepType.narrow, new float[] { start, end }));
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// Replaces the steps at index i and i + 1 with a single step.
+	private static void replace(ArrayList<Step> list, int i, Step step) {
+		list.set(i, step);
+		list.remove(i + 1);
+	}
+
+	/*
+	 * sum(weight * y) / (n * weight) = sum(y) / n, so equal weights can be removed.
+	 */
+	private static void collapseWeights(Mapping[] mappings) {
+		for (Mapping mapping : mappings) {
+			if (mapping.weight != mappings[0].weight) {
+				return;
+			}
+		}
+		for (Mapping mapping : mappings) {
+			Step[] steps = mapping.steps;
+			if (steps[steps.length - 1].type == StepType.weight) {
+				mapping.steps = steps.length > 1 ? Arrays.copyOf(steps, steps.length - 1)
+						: new Step[] { new Step(StepType.x, new float[] {}) };
+			}
+			mapping.weight = 1;
+		}
+	}
+}
@@ -0,0 +1,196 @@
+package de.ulrich_boeing.map;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The Parser reads a map-defining string in a single pass, without regular
+ * expressions and without creating substrings for anything but the
+ * parameters.<br>
+ * <br>
+ * Grammar of the string:
+ * <ul>
+ * <li>Mappings are separated by '&', the steps of a Mapping by '>'.</li>
+ * <li>A step is a name like 'exp' followed by parameters, which are separated
+ * by whitespace or commas. Words after the parameters the step needs are
+ * not parsed, Step only warns about them (e.g. 'sin cos' is 'sin').</li>
+ * <li>The random types take the keyword 'seed' followed by an integer, e.g.
+ * 'random 6 seed 42', so they create the same values each time.</li>
+ * <li>A sequence of operators ('>', '&') and whitespace counts as a single '&'
+ * if it contains an '&', otherwise as a single '>'.</li>
+ * <li>Operators at the beginning and at the end are ignored, an empty string is
+ * 'x'.</li>
+ * <li>Upper and lower case are not distinguished.</li>
+ * </ul>
+ *
+ */
+class Parser {
+	private static final StepType[] types = StepType.values();
+	private static final String SEED = "seed";
+
+	private final String str;
+	private final int length;
+	private int pos;
+	// parameters of the current step, reused for all steps
+	private float[] values = new float[4];
+
+	private Parser(String str) {
+		this.str = str;
+		length = str.length();
+	}
+
+	/**
+	 * Parses a map-defining string.
+	 *
+	 * @return The expression of the ComplexMap, with at least one Mapping.
+	 */
+	static MapExpr parse(String str) {
+		return new Parser(str).parseMappings();
+	}
+
+	private MapExpr parseMappings() {
+		ArrayList<StepExpr[]> mappings = new ArrayList<>(2);
+		ArrayList<StepExpr> steps = new ArrayList<>(4);
+
+		skipOperators();
+		while (pos < length) {
+			steps.add(parseStep());
+			if (skipOperators()) {
+				mappings.add(steps.toArray(new StepExpr[steps.size()]));
+				steps.clear();
+			}
+		}
+		if (!steps.isEmpty()) {
+			mappings.add(steps.toArray(new StepExpr[steps.size()]));
+		}
+		if (mappings.isEmpty()) {
+			mappings.add(new StepExpr[] { StepExpr.x() });
+		}
+		return new MapExpr(mappings.toArray(new StepExpr[mappings.size()][]));
+	}
+
+	/**
+	 * Skips a sequence of operators and whitespace.
+	 *
+	 * @return true if the sequence contains an '&'.
+	 */
+	private boolean skipOperators() {
+		boolean and = false;
+		while (pos < length) {
+			char c = str.charAt(pos);
+			if (c == '&') {
+				and = true;
+			} else if (c != '>' && !isWhitespace(c)) {
+				break;
+			}
+			pos++;
+		}
+		return and;
+	}
+
+	private StepExpr parseStep() {
+		int start = pos;
+		skipWord();
+		StepType type = getStepType(start, pos);
+
+		// all given words, parameters and surplus words
+		int count = 0;
+		ArrayList<String> surplus = null;
+		boolean seeded = false;
+		long seed = 0;
+		while (true) {
+			// skip the separators between name and parameters
+			while (pos < length && isSeparator(str.charAt(pos))) {
+				pos++;
+			}
+			if (pos == length || isOperator(str.charAt(pos))) {
+				break;
+			}
+			start = pos;
+			skipWord();
+			if (type.isRandom() && pos - start == SEED.length()
+					&& str.regionMatches(true, start, SEED, 0, SEED.length())) {
+				seed = parseSeed(type);
+				seeded = true;
+				continue;
+			}
+			if (count < type.parameterNeeded) {
+				if (count == values.length) {
+					values = Arrays.copyOf(values, count * 2);
+				}
+				values[count] = parseParameter(type, str.substring(start, pos));
+			} else {
+				// like the former Step.getParameter(): only counted for the warning
+				if (surplus == null) {
+					surplus = new ArrayList<>(2);
+				}
+				surplus.add(str.substring(start, pos));
+			}
+			count++;
+		}
+		StepExpr step = surplus == null ? new StepExpr(type, Arrays.copyOf(values, count))
+				: new StepExpr(type, Arrays.copyOf(values, type.parameterNeeded),
+						surplus.toArray(new String[surplus.size()]));
+		return seeded ? step.withSeed(seed) : step;
+	}
+
+	// parses the word after 'seed'
+	private long parseSeed(StepType type) {
+		while (pos < length && isSeparator(str.charAt(pos))) {
+			pos++;
+		}
+		int start = pos;
+		skipWord();
+		String seed = str.substring(start, pos);
+		try {
+			return Long.parseLong(seed);
+		} catch (NumberFormatException e) {
+			throw new NumberFormatException(
+					"Seed '" + seed + "' for Step '" + type.toString() + "' could not be converted into a long value.");
+		}
+	}
+
+	private void skipWord() {
+		while (pos < length) {
+			char c = str.charAt(pos);
+			if (isSeparator(c) || isOperator(c)) {
+				break;
+			}
+			pos++;
+		}
+	}
+
+	private StepType getStepType(int start, int end) {
+		for (StepType type : types) {
+			String name = type.name();
+			if (name.length() == end - start && str.regionMatches(true, start, name, 0, name.length())) {
+				return type;
+			}
+		}
+		String name = str.substring(start, end).toLowerCase();
+		throw new RuntimeException("'" + name + "' is not a valid operation for Map.");
+	}
+
+	private static float parseParameter(StepType type, String str) {
+		str = str.toLowerCase();
+		try {
+			return Float.parseFloat(str);
+		} catch (NumberFormatException e) {
+			throw new NumberFormatException("Parameter '" + str + "' for Step '" + type.toString()
+					+ "' could not be converted into a float value.");
+		}
+	}
+
+	private static boolean isOperator(char c) {
+		return c == '>' || c == '&';
+	}
+
+	private static boolean isSeparator(char c) {
+		return c == ',' || isWhitespace(c);
+	}
+
+	// the same characters as \s in a regular expression
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == 0x0B;
+	}
+}
@@ -1,7 +1,13 @@
 package de.ulrich_boeing.map;
 
+/**
+ * The Precision of a map defines its type: A Graph with the given resolution, a
+ * ComplexMap (Highest) or a FlatMap (Flat), which interprets the ComplexMap as
+ * one flat program. Highest and Flat calculate the same exact values, Flat is
+ * faster for single values of short definitions without trigonometric steps.
+ */
 public enum Precision {
-	Low(10), Normal(100), High(200), VeryHigh(1000), Highest(0); 
+	Low(10), Normal(100), High(200), VeryHigh(1000), Highest(0), Flat(0); 
 	
 	int resolution;
 	
@@ -28,6 +28,10 @@ public class Range {
 	private float max;
 
 	RepeatRange repeat;
+	// counts the changes of start, end and repeat, see GraphKernel
+	int version;
+	// the metrics of the map using this Range, or null
+	MapMetrics metrics;
 	// One ErrorAction for all Range-objects
 	public static ErrorAction onExceedRange;
 
@@ -42,6 +46,12 @@ public class Range {
 		range = end - start;
 		min = Math.min(start, end);
 		max = Math.max(start, end);
+		version++;
+	}
+
+	void setRepeat(RepeatRange repeat) {
+		this.repeat = repeat;
+		version++;
 	}
 
 	public boolean equal(float start, float end) {
@@ -49,19 +59,44 @@ public class Range {
 	}
 
 	float checkRange(float x) {
+		return checkRange(x, start, end, min, max, repeat, onExceedRange, metrics);
+	}
+
+	/**
+	 * Limits or repeats x, if it is outside the range between start and end. This
+	 * is the checkRange of all Range objects and of ImmutableRange, which passes
+	 * its own final values.
+	 *
+	 * @param min
+	 *            The smaller one of start and end.
+	 * @param max
+	 *            The bigger one of start and end.
+	 * @param onExceedRange
+	 *            The ErrorAction if x is outside.
+	 * @param metrics
+	 *            Counts x if it is outside, may be null.
+	 */
+	static float checkRange(float x, float start, float end, float min, float max, RepeatRange repeat,
+			ErrorAction onExceedRange, MapMetrics metrics) {
 		if (x < min) {
-			errorHandling(x);
+			if (metrics != null) {
+				metrics.belowRange.increment();
+			}
+			errorHandling(x, start, end, onExceedRange);
 			if (repeat == RepeatRange.Both || repeat == RepeatRange.Min) {
-				int n = (int) ((min - x) / Math.abs(range)) + 1;
-				x += n * Math.abs(range);
+				int n = (int) ((min - x) / Math.abs(end - start)) + 1;
+				x += n * Math.abs(end - start);
 			} else {
 				x = min;
 			}
 		} else if (x > max) {
-			errorHandling(x);
+			if (metrics != null) {
+				metrics.aboveRange.increment();
+			}
+			errorHandling(x, start, end, onExceedRange);
 			if (repeat == RepeatRange.Both || repeat == RepeatRange.Max) {
-				int n = (int) ((x - max) / Math.abs(range)) + 1;
-				x -= n * Math.abs(range);
+				int n = (int) ((x - max) / Math.abs(end - start)) + 1;
+				x -= n * Math.abs(end - start);
 			} else {
 				x = max;
 			}
@@ -79,6 +114,31 @@ public class Range {
 		return checkRange(x);
 	}
 
+	/**
+	 * Normalizes length values of in and writes them to out, the same as calling
+	 * normalize() for every single value.
+	 */
+	void normalize(float[] in, int inOffset, float[] out, int outOffset, int length) {
+		float start = this.start;
+		float range = this.range;
+		for (int i = 0; i < length; i++) {
+			float x = checkRange(in[inOffset + i]);
+			out[outOffset + i] = (x - start) / range;
+		}
+	}
+
+	/**
+	 * DeNormalizes length values of x in place, the same as calling deNormalize()
+	 * for every single value.
+	 */
+	void deNormalize(float[] x, int offset, int length) {
+		float start = this.start;
+		float range = this.range;
+		for (int i = offset; i < offset + length; i++) {
+			x[i] = checkRange(start + x[i] * range);
+		}
+	}
+
 	public float getStart() {
 		return start;
 	}
@@ -91,21 +151,36 @@ public class Range {
 		return range;
 	}
 
-	private void errorHandling(float x) {
+	float getMin() {
+		return min;
+	}
+
+	float getMax() {
+		return max;
+	}
+
+	private static void errorHandling(float x, float start, float end, ErrorAction onExceedRange) {
 		if (onExceedRange == ErrorAction.ErrorMsg) {
-			System.err.println(getErrorMsg(x));
+			// the message is only built if it is written
+			if (SampledLog.range.sample()) {
+				SampledLog.range.write(getErrorMsg(x, start, end));
+			}
 		} else if (onExceedRange == ErrorAction.Exception) {
-			throw new RuntimeException(getErrorMsg(x));
+			throw new RuntimeException(getErrorMsg(x, start, end));
 		}
 	}
 
-	private String getErrorMsg(float x) {
-		return "Value '" + x + "' is outside " + toString() + ".";
+	private static String getErrorMsg(float x, float start, float end) {
+		return "Value '" + x + "' is outside " + toString(start, end) + ".";
 
 	}
 
 	@Override
 	public String toString() {
+		return toString(start, end);
+	}
+
+	static String toString(float start, float end) {
 		return "range from '" + start + "' to '" + end + "'";
 	}
 }
@@ -0,0 +1,73 @@
+package de.ulrich_boeing.map;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A SampledLog writes a kind of message to System.err at most once per
+ * interval. The messages in between are only counted, the next written message
+ * tells how many were suppressed. So a value outside a Range in a loop doesn't
+ * flood the log and doesn't serialize all threads on the lock of
+ * System.err.<br>
+ * <br>
+ * The interval is one second by default, 0 writes every message.
+ *
+ * @author Ulrich Bing
+ *
+ */
+public final class SampledLog {
+	static final SampledLog range = new SampledLog();
+	static final SampledLog parameter = new SampledLog();
+	static final SampledLog targetMap = new SampledLog();
+
+	private static volatile long intervalNanos = 1000000000L;
+
+	// the earliest System.nanoTime() of the next written message
+	private final AtomicLong next = new AtomicLong(System.nanoTime());
+	private final LongAdder suppressed = new LongAdder();
+
+	private SampledLog() {
+	}
+
+	/**
+	 * Sets the minimum time between two messages of the same kind.
+	 *
+	 * @param millis
+	 *            The interval in milliseconds, 0 writes every message.
+	 */
+	public static void setInterval(long millis) {
+		intervalNanos = millis * 1000000L;
+	}
+
+	/**
+	 * @return true if a message may be written now. Otherwise the message is
+	 *         counted as suppressed, so the caller doesn't need to build it.
+	 */
+	boolean sample() {
+		long now = System.nanoTime();
+		long next = this.next.get();
+		if (now - next >= 0 && this.next.compareAndSet(next, now + intervalNanos)) {
+			return true;
+		}
+		suppressed.increment();
+		return false;
+	}
+
+	/**
+	 * Writes a message which was allowed by sample().
+	 */
+	void write(String message) {
+		long count = suppressed.sumThenReset();
+		if (count > 0) {
+			message += " (" + count + " similar messages suppressed)";
+		}
+		System.err.println(message);
+	}
+
+	// sample() and write() for messages which are cheap to build
+	void log(String message) {
+		if (sample()) {
+			write(message);
+		}
+	}
+}
@@ -10,59 +10,87 @@ package de.ulrich_boeing.map;
 class Step {
 	StepType type;
 	float[] p;
+	// trigonometric types are approximated if not Exact
+	Accuracy accuracy = Accuracy.Exact;
+	// the given parameters and the seed of a seeded random step, otherwise null
+	private float[] given;
+	private long seed;
 
-	Step(String str) {
-		build(str);
-	}
-
-	private void build(String str) {
-		// e.g. "type value01, value 02"
-		String[] arr = str.split("[\\s,]+");
-
-		type = getStepType(arr[0]);
-		p = getParameter(arr);
+	/**
+	 * A step with parameters as given in a map-defining string. Missing parameters
+	 * are replaced with the defaults of the StepType.
+	 * 
+	 * @param values
+	 *            The given parameters, only the first count values are used.
+	 */
+	Step(StepType type, float[] values, int count) {
+		this.type = type;
+		p = getParameter(values, count);
 		p = type.evaluateParameter(p);
 	}
 
-	protected float normMap(float x) {
-		return type.calculate(x, p);
+	/**
+	 * A step with a seed like 'random 6 seed 42', which creates the same values
+	 * each time.
+	 */
+	Step(StepType type, float[] values, int count, long seed) {
+		this.type = type;
+		given = getParameter(values, count);
+		this.seed = seed;
+		p = type.evaluateParameter(given.clone(), seed);
 	}
 
-	private StepType getStepType(String str) {
-		try {
-			return StepType.valueOf(str);
-		} catch (IllegalArgumentException e) {
-			throw new RuntimeException("'" + str + "' is not a valid operation for Map.");
-		}
+	// A step with already evaluated parameters, e.g. created by the Optimizer.
+	Step(StepType type, float[] p) {
+		this.type = type;
+		this.p = p;
 	}
-	
-	private float[] getParameter(String[] arr) {
-		tooManyParameter(arr.length - 1);
 
-		float[] parameter = new float[type.parameterNeeded];
-		for (int i = 0; i < parameter.length; i++) {
-			// if a parameter is not given in the string array use default parameter
-			if (i + 1 < arr.length) {
-				parameter[i] = parseParameter(arr[i + 1]);
+	private float[] getParameter(float[] values, int count) {
+		tooManyParameter(count);
+
+		float[] p = new float[type.parameterNeeded];
+		for (int i = 0; i < p.length; i++) {
+			// if a parameter is not given use default parameter
+			if (i < count) {
+				p[i] = values[i];
 			} else {
-				parameter[i] = type.defaults[i];
+				p[i] = type.defaults[i];
 			}
 		}
-		return parameter;
+		return p;
 	}
 
-	private float parseParameter(String str) {
-		try {
-			return Float.parseFloat(str);
-		} catch (NumberFormatException e) {
-			throw new NumberFormatException("Parameter '" + str + "' for Step '" + type.toString()
-					+ "' could not be converted into a float value.");
+	protected float normMap(float x) {
+		if (accuracy == Accuracy.Exact) {
+			return type.calculate(x, p);
 		}
+		return type.approximate(x, p, accuracy);
 	}
-	
+
+	protected void normMapAll(float[] x, int offset, int length) {
+		if (accuracy == Accuracy.Exact) {
+			type.calculateAll(x, offset, length, p);
+		} else {
+			type.approximateAll(x, offset, length, p, accuracy);
+		}
+	}
+
+	boolean isFast() {
+		return type.isFast(accuracy);
+	}
+
+	/**
+	 * @return true, if the step is random and has no seed, so it is different
+	 *         each time it is created.
+	 */
+	boolean isRandom() {
+		return type.isRandom() && given == null;
+	}
+
 	private void tooManyParameter(int parameterCount) {
 		if (parameterCount > type.parameterNeeded) {
-			System.err.println("To many parameter: Step '" + type.name() + "' needs " + type.parameterNeeded
+			SampledLog.parameter.log("To many parameter: Step '" + type.name() + "' needs " + type.parameterNeeded
 					+ " parameter, but " + parameterCount + " are given.");
 		}
 	}
@@ -70,12 +98,17 @@ class Step {
 	@Override
 	public String toString() {
 		String str = type.toString();
+		// a seeded step is printed as given, so its definition creates it again
+		float[] p = given != null ? given : this.p;
 		for (int i = 0; i < p.length; i++) {
 			if (i > 0) {
 				str += ",";
 			}
 			str += " " + Float.toString(p[i]);
 		}
+		if (given != null) {
+			str += " seed " + seed;
+		}
 		return str;
 	}
 }
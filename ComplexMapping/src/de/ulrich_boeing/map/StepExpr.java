@@ -0,0 +1,229 @@
+package de.ulrich_boeing.map;
+
+import java.util.Arrays;
+
+/**
+ * A StepExpr is a single step of a MapExpr, like 'exp 3' or 'random 6 seed
+ * 42', with its parameters as given. Missing parameters are replaced with the
+ * defaults of the step when the map is created.<br>
+ * A StepExpr is immutable. The static methods create one for every kind of
+ * step, they are meant to be imported statically:
+ *
+ * <pre>
+ * import static de.ulrich_boeing.map.StepExpr.*;
+ *
+ * MapExpr expr = MapExpr.of(triangle(0.5f)).then(invert()).then(exp(3)).and(sin());
+ * </pre>
+ *
+ * @author Ulrich Bing
+ *
+ */
+public final class StepExpr {
+	private static final float[] NONE = {};
+	private static final String[] NO_WORDS = {};
+
+	final StepType type;
+	private final float[] parameters;
+	// words of a definition string after all needed parameters, they are ignored
+	private final String[] surplus;
+	private final boolean seeded;
+	private final long seed;
+
+	private StepExpr(StepType type, float[] parameters, String[] surplus, boolean seeded, long seed) {
+		if (seeded && !type.isRandom()) {
+			throw new IllegalArgumentException("Step '" + type.name() + "' has no seed.");
+		}
+		this.type = type;
+		this.parameters = parameters;
+		this.surplus = surplus;
+		this.seeded = seeded;
+		this.seed = seed;
+	}
+
+	StepExpr(StepType type, float... parameters) {
+		this(type, parameters, NO_WORDS, false, 0);
+	}
+
+	/**
+	 * A step of a definition string with more words than the step needs. Like
+	 * given parameters they are counted by Step.tooManyParameter(), which warns
+	 * about them, but they are not parsed.
+	 */
+	StepExpr(StepType type, float[] parameters, String[] surplus) {
+		this(type, parameters, surplus, false, 0);
+	}
+
+	/**
+	 * Creates a step by its name, like a step of a map-defining string.
+	 *
+	 * @param name
+	 *            The name of the step, e.g. 'exp'. Upper and lower case are not
+	 *            distinguished.
+	 * @param parameters
+	 *            The given parameters, missing ones are replaced with the defaults.
+	 */
+	public static StepExpr of(String name, float... parameters) {
+		StepType type;
+		try {
+			type = StepType.valueOf(name.toLowerCase());
+		} catch (IllegalArgumentException e) {
+			throw new RuntimeException("'" + name.toLowerCase() + "' is not a valid operation for Map.");
+		}
+		return new StepExpr(type, parameters.clone());
+	}
+
+	public static StepExpr x() {
+		return new StepExpr(StepType.x, NONE);
+	}
+
+	public static StepExpr invert() {
+		return new StepExpr(StepType.invert, NONE);
+	}
+
+	public static StepExpr constant(float value) {
+		return new StepExpr(StepType.constant, value);
+	}
+
+	public static StepExpr narrow(float start, float end) {
+		return new StepExpr(StepType.narrow, start, end);
+	}
+
+	public static StepExpr exp(float exponent) {
+		return new StepExpr(StepType.exp, exponent);
+	}
+
+	public static StepExpr outward(float exponent) {
+		return new StepExpr(StepType.outward, exponent);
+	}
+
+	public static StepExpr inward(float exponent) {
+		return new StepExpr(StepType.inward, exponent);
+	}
+
+	public static StepExpr peak(float position) {
+		return new StepExpr(StepType.peak, position);
+	}
+
+	public static StepExpr triangle(float position) {
+		return new StepExpr(StepType.triangle, position);
+	}
+
+	public static StepExpr trapez(float start, float end) {
+		return new StepExpr(StepType.trapez, start, end);
+	}
+
+	public static StepExpr sin() {
+		return new StepExpr(StepType.sin, NONE);
+	}
+
+	public static StepExpr fullsin() {
+		return new StepExpr(StepType.fullsin, NONE);
+	}
+
+	public static StepExpr cos() {
+		return new StepExpr(StepType.cos, NONE);
+	}
+
+	public static StepExpr fullcos() {
+		return new StepExpr(StepType.fullcos, NONE);
+	}
+
+	/**
+	 * @param count
+	 *            The number of random values between 0 and 1.
+	 */
+	public static StepExpr random(int count) {
+		return new StepExpr(StepType.random, count);
+	}
+
+	public static StepExpr squarerandom(int count) {
+		return new StepExpr(StepType.squarerandom, count);
+	}
+
+	public static StepExpr repeat(float times) {
+		return new StepExpr(StepType.repeat, times);
+	}
+
+	public static StepExpr mirror(float times) {
+		return new StepExpr(StepType.mirror, times);
+	}
+
+	/**
+	 * The weight of a Mapping, it must be the last step of the Mapping.
+	 */
+	public static StepExpr weight(float weight) {
+		return new StepExpr(StepType.weight, weight);
+	}
+
+	/**
+	 * @return A copy of this random step, which creates the same values each time.
+	 * @throws IllegalArgumentException
+	 *             If the step is not random or squarerandom.
+	 */
+	public StepExpr withSeed(long seed) {
+		return new StepExpr(type, parameters, surplus, true, seed);
+	}
+
+	public String getName() {
+		return type.name();
+	}
+
+	/**
+	 * @return The given parameters, without the defaults.
+	 */
+	public float[] getParameters() {
+		return parameters.clone();
+	}
+
+	public boolean hasSeed() {
+		return seeded;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	Step toStep() {
+		int count = parameters.length + surplus.length;
+		if (seeded) {
+			return new Step(type, parameters, count, seed);
+		}
+		return new Step(type, parameters, count);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof StepExpr)) {
+			return false;
+		}
+		StepExpr other = (StepExpr) obj;
+		return type == other.type && Arrays.equals(parameters, other.parameters)
+				&& Arrays.equals(surplus, other.surplus) && seeded == other.seeded && seed == other.seed;
+	}
+
+	@Override
+	public int hashCode() {
+		return (type.hashCode() * 31 + Arrays.hashCode(parameters)) * 31 + Long.hashCode(seed);
+	}
+
+	/**
+	 * @return The step in the syntax of a map-defining string.
+	 */
+	@Override
+	public String toString() {
+		String str = type.toString();
+		for (int i = 0; i < parameters.length; i++) {
+			if (i > 0) {
+				str += ",";
+			}
+			str += " " + Float.toString(parameters[i]);
+		}
+		for (String word : surplus) {
+			str += " " + word;
+		}
+		if (seeded) {
+			str += " seed " + seed;
+		}
+		return str;
+	}
+}
@@ -1,4 +1,8 @@
-package de.ulrich_boeing.map;;
+package de.ulrich_boeing.map;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
 
 enum StepType {
 
@@ -11,6 +15,10 @@ enum StepType {
 			return x;
 		}
 
+		@Override
+		void calculateAll(float[] x, int offset, int length, float[] p) {
+		}
+
 		@Override
 		float[] evaluateParameter(float[] p) {
 			return p;
@@ -21,6 +29,13 @@ enum StepType {
 			return 1 - x;
 		}
 
+		@Override
+		void calculateAll(float[] x, int offset, int length, float[] p) {
+			for (int i = offset; i < offset + length; i++) {
+				x[i] = 1 - x[i];
+			}
+		}
+
 		@Override
 		float[] evaluateParameter(float[] p) {
 			return p;
@@ -32,6 +47,11 @@ enum StepType {
 			return p[0];
 		}
 
+		@Override
+		void calculateAll(float[] x, int offset, int length, float[] p) {
+			Arrays.fill(x, offset, offset + length, p[0]);
+		}
+
 		@Override
 		float[] evaluateParameter(float[] p) {
 			return p;
@@ -39,7 +59,8 @@ enum StepType {
 	},
 	narrow(true, 2, new float[] { 0.2f, 0.8f }) {
 		float calculate(float x, float[] p) {
-			if (x < p[0]) {
+			// x = p[0] gives 0, not -0 or 0 / 0 if both parameters are equal
+			if (x <= p[0]) {
 				return 0;
 			} else if (x > p[1]) {
 				return 1;
@@ -48,6 +69,23 @@ enum StepType {
 			}
 		}
 
+		/*
+		 * Without branches the loop can be vectorized: clamping the straight line to
+		 * 0-1 gives the same values as the three cases of calculate(), as long as p[0]
+		 * is less than p[1].
+		 */
+		@Override
+		void calculateAll(float[] x, int offset, int length, float[] p) {
+			float p0 = p[0], p1 = p[1];
+			if (p0 >= p1) {
+				super.calculateAll(x, offset, length, p);
+				return;
+			}
+			for (int i = offset; i < offset + length; i++) {
+				x[i] = Math.min(1, Math.max(0, (x[i] - p0) / (p1 - p0)));
+			}
+		}
+
 		@Override
 		float[] evaluateParameter(float[] p) {
 			return p;
@@ -76,6 +114,24 @@ enum StepType {
 			return x;
 		}
 
+		@Override
+		void calculateAll(float[] x, int offset, int length, float[] p) {
+			float e = p[0];
+			if (e == 1) {
+				return;
+			}
+			double abs = Math.abs(e);
+			if (e < 0) {
+				for (int i = offset; i < offset + length; i++) {
+					x[i] = 1 - (float) Math.pow(1 - x[i], abs);
+				}
+			} else {
+				for (int i = offset; i < offset + length; i++) {
+					x[i] = (float) Math.pow(x[i], abs);
+				}
+			}
+		}
+
 		@Override
 		float[] evaluateParameter(float[] p) {
 			if (p[0] == 0) {
@@ -133,6 +189,20 @@ enum StepType {
 				return 1 - Math.abs(p[0] - x) / p[0];
 		}
 
+		@Override
+		void calculateAll(float[] x, int offset, int length, float[] p) {
+			float p0 = p[0];
+			if (p0 < 0.5) {
+				for (int i = offset; i < offset + length; i++) {
+					x[i] = 1 - Math.abs(x[i] - p0) / (1 - p0);
+				}
+			} else {
+				for (int i = offset; i < offset + length; i++) {
+					x[i] = 1 - Math.abs(p0 - x[i]) / p0;
+				}
+			}
+		}
+
 		@Override
 		float[] evaluateParameter(float[] p) {
 			if (p[0] <= 0 || p[0] >= 1) {
@@ -149,6 +219,18 @@ enum StepType {
 				return (1 - x) / (1 - p[0]);
 		}
 
+		/*
+		 * Left of the peak the rising line is the lower one, right of the peak the
+		 * falling line, so the minimum of both replaces the branch.
+		 */
+		@Override
+		void calculateAll(float[] x, int offset, int length, float[] p) {
+			float p0 = p[0];
+			for (int i = offset; i < offset + length; i++) {
+				x[i] = Math.min(x[i] / p0, (1 - x[i]) / (1 - p0));
+			}
+		}
+
 		@Override
 		float[] evaluateParameter(float[] p) {
 			if (p[0] <= 0 || p[0] >= 1) {
@@ -161,10 +243,28 @@ enum StepType {
 		float calculate(float x, float[] p) {
 			if (x < p[0]) {
 				return x / p[0];
-			} else if (x > p[1]) {
-				return (1 - x) / (1 - p[1]);
-			} else {
+			} else if (x <= p[1]) {
 				return 1;
+			} else {
+				// also NaN, like the other types
+				return (1 - x) / (1 - p[1]);
+			}
+		}
+
+		/*
+		 * The minimum of the rising line, the falling line and 1 replaces the
+		 * branches, if both parameters are inside 0-1 and p[0] is not greater than
+		 * p[1].
+		 */
+		@Override
+		void calculateAll(float[] x, int offset, int length, float[] p) {
+			float p0 = p[0], p1 = p[1];
+			if (p0 <= 0 || p0 > p1 || p1 >= 1) {
+				super.calculateAll(x, offset, length, p);
+				return;
+			}
+			for (int i = offset; i < offset + length; i++) {
+				x[i] = Math.min(1, Math.min(x[i] / p0, (1 - x[i]) / (1 - p1)));
 			}
 		}
 
@@ -177,41 +277,90 @@ enum StepType {
 	/*
 	 * trigonometric functions
 	 */
-	sin(false, 0, new float[] {}) {
+	sin(false, true, 0, new float[] {}) {
+		@Override
+		float approximate(float x, float[] p, Accuracy accuracy) {
+			return FastMath.sin2Pi(x / 2, accuracy);
+		}
+
 		float calculate(float x, float[] p) {
 			return (float) Math.sin(Math.PI * x);
 		}
 
+		@Override
+		void calculateAll(float[] x, int offset, int length, float[] p) {
+			for (int i = offset; i < offset + length; i++) {
+				x[i] = (float) Math.sin(Math.PI * x[i]);
+			}
+		}
+
 		@Override
 		float[] evaluateParameter(float[] p) {
 			return p;
 		}
 	},
-	fullsin(false, 0, new float[] {}) {
+	fullsin(false, true, 0, new float[] {}) {
+		@Override
+		float approximate(float x, float[] p, Accuracy accuracy) {
+			return 0.5f + FastMath.sin2Pi(x, accuracy) / 2;
+		}
+
 		float calculate(float x, float[] p) {
 			return 0.5f + (float) Math.sin(2 * Math.PI * x) / 2;
 		}
 
+		@Override
+		void calculateAll(float[] x, int offset, int length, float[] p) {
+			for (int i = offset; i < offset + length; i++) {
+				x[i] = 0.5f + (float) Math.sin(2 * Math.PI * x[i]) / 2;
+			}
+		}
+
 		@Override
 		float[] evaluateParameter(float[] p) {
 			return p;
 		}
 	},
-	cos(false, 0, new float[] {}) {
+	cos(false, true, 0, new float[] {}) {
+		@Override
+		float approximate(float x, float[] p, Accuracy accuracy) {
+			// cos(a) = sin(a + PI / 2)
+			return 0.5f + FastMath.sin2Pi(x / 2 + 0.25f, accuracy) / 2;
+		}
+
 		float calculate(float x, float[] p) {
 			return 0.5f + (float) Math.cos(Math.PI * x) / 2;
 		}
 
+		@Override
+		void calculateAll(float[] x, int offset, int length, float[] p) {
+			for (int i = offset; i < offset + length; i++) {
+				x[i] = 0.5f + (float) Math.cos(Math.PI * x[i]) / 2;
+			}
+		}
+
 		@Override
 		float[] evaluateParameter(float[] p) {
 			return p;
 		}
 	},
-	fullcos(false, 0, new float[] {}) {
+	fullcos(false, true, 0, new float[] {}) {
+		@Override
+		float approximate(float x, float[] p, Accuracy accuracy) {
+			return 0.5f + FastMath.sin2Pi(x + 0.25f, accuracy) / 2;
+		}
+
 		float calculate(float x, float[] p) {
 			return 0.5f + (float) Math.cos(2 * Math.PI * x) / 2;
 		}
 
+		@Override
+		void calculateAll(float[] x, int offset, int length, float[] p) {
+			for (int i = offset; i < offset + length; i++) {
+				x[i] = 0.5f + (float) Math.cos(2 * Math.PI * x[i]) / 2;
+			}
+		}
+
 		@Override
 		float[] evaluateParameter(float[] p) {
 			return p;
@@ -230,13 +379,19 @@ enum StepType {
 
 		@Override
 		float[] evaluateParameter(float[] p) {
+			return evaluateParameter(p, ThreadLocalRandom.current().nextLong());
+		}
+
+		@Override
+		float[] evaluateParameter(float[] p, long seed) {
 			int count = (int) p[0] + 2;
 			if (count < 2) {
 				illegalArgument(p[0]);
 			}
+			SplittableRandom random = new SplittableRandom(seed);
 			p = new float[count];
 			for (int i = 0; i < count; i++) {
-				p[i] = (float) Math.random();
+				p[i] = (float) random.nextDouble();
 			}
 			return p;
 		}
@@ -250,13 +405,19 @@ enum StepType {
 
 		@Override
 		float[] evaluateParameter(float[] p) {
+			return evaluateParameter(p, ThreadLocalRandom.current().nextLong());
+		}
+
+		@Override
+		float[] evaluateParameter(float[] p, long seed) {
 			int count = (int) p[0] + 1;
 			if (count < 2) {
 				illegalArgument(p[0]);
 			}
+			SplittableRandom random = new SplittableRandom(seed);
 			p = new float[count];
 			for (int i = 0; i < count -1; i++) {
-				p[i] = (float) Math.random();
+				p[i] = (float) random.nextDouble();
 			}
 			p[p.length-1] = p[p.length -2];
 			return p;
@@ -270,6 +431,14 @@ enum StepType {
 			return (x * p[0]) % 1;
 		}
 
+		@Override
+		void calculateAll(float[] x, int offset, int length, float[] p) {
+			float p0 = p[0];
+			for (int i = offset; i < offset + length; i++) {
+				x[i] = (x[i] * p0) % 1;
+			}
+		}
+
 		@Override
 		float[] evaluateParameter(float[] p) {
 			if (p[0] == 1) {
@@ -289,6 +458,14 @@ enum StepType {
 
 		}
 
+		@Override
+		void calculateAll(float[] x, int offset, int length, float[] p) {
+			repeat.calculateAll(x, offset, length, p);
+			for (int i = offset; i < offset + length; i++) {
+				x[i] = Math.min(2 * x[i], (1 - x[i]) * 2);
+			}
+		}
+
 		@Override
 		float[] evaluateParameter(float[] p) {
 			return p;
@@ -299,6 +476,14 @@ enum StepType {
 			return x * p[0];
 		}
 
+		@Override
+		void calculateAll(float[] x, int offset, int length, float[] p) {
+			float p0 = p[0];
+			for (int i = offset; i < offset + length; i++) {
+				x[i] = x[i] * p0;
+			}
+		}
+
 		@Override
 		float[] evaluateParameter(float[] p) {
 			return p;
@@ -306,15 +491,30 @@ enum StepType {
 	};
 
 	final boolean fast;
+	// true if approximate() is faster than calculate()
+	final boolean approximated;
 	final int parameterNeeded;
 	final float[] defaults;
 
 	StepType(boolean fast, int parameterNeeded, float[] defaults) {
+		this(fast, false, parameterNeeded, defaults);
+	}
+
+	StepType(boolean fast, boolean approximated, int parameterNeeded, float[] defaults) {
 		this.fast = fast;
+		this.approximated = approximated;
 		this.parameterNeeded = parameterNeeded;
 		this.defaults = defaults;
 	}
 
+	/**
+	 * A StepType is fast, if it is fast by itself or if it has a fast approximation
+	 * which is used for the given Accuracy.
+	 */
+	boolean isFast(Accuracy accuracy) {
+		return fast || (approximated && accuracy != Accuracy.Exact);
+	}
+
 	void illegalArgument(float parameter) {
 		String msg = "Wrong parameter '" + parameter + "' for Step '" + name() + "'.";
 		throw new IllegalArgumentException(msg);
@@ -322,5 +522,47 @@ enum StepType {
 
 	abstract float calculate(float x, float[] p);
 
+	/**
+	 * Replaces length values of x, starting at offset, with their calculated
+	 * values. The result is the same as calling calculate() for every single
+	 * value, but the parameters are loaded once for the whole block.<br>
+	 * Overriding methods avoid branches inside the loop where possible (e.g. with
+	 * Math.min and Math.max), so the JIT compiler can vectorize it.
+	 */
+	void calculateAll(float[] x, int offset, int length, float[] p) {
+		for (int i = offset; i < offset + length; i++) {
+			x[i] = calculate(x[i], p);
+		}
+	}
+
 	abstract float[] evaluateParameter(float[] p);
+
+	/**
+	 * Evaluates the parameters of a step with a seed, e.g. 'random 6 seed 42'.
+	 * Only the random types override this method, they create the same values for
+	 * the same seed. Without a seed they take one from the ThreadLocalRandom, so
+	 * threads don't contend for a shared Random.
+	 */
+	float[] evaluateParameter(float[] p, long seed) {
+		throw new IllegalArgumentException("Step '" + name() + "' has no seed.");
+	}
+
+	boolean isRandom() {
+		return this == random || this == squarerandom;
+	}
+
+	/**
+	 * Approximates calculate() with the given Accuracy. Only the trigonometric
+	 * types override this method, all other types are calculated exactly.
+	 */
+	float approximate(float x, float[] p, Accuracy accuracy) {
+		return calculate(x, p);
+	}
+
+	// The same as calling approximate() for every single value.
+	void approximateAll(float[] x, int offset, int length, float[] p, Accuracy accuracy) {
+		for (int i = offset; i < offset + length; i++) {
+			x[i] = approximate(x[i], p, accuracy);
+		}
+	}
 }
@@ -0,0 +1,288 @@
+package de.ulrich_boeing.map;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import de.ulrich_boeing.map.Range.RepeatRange;
+
+/**
+ * A Timeline morphs through a sequence of maps (keyframes) A > B > C > ... over
+ * a time axis.<br>
+ * <br>
+ * The maps are sampled once to nodes on a shared grid and stored one after
+ * another in a single array. map(x, t) finds the two keyframes around t by a
+ * binary search over the key times, eases the position between them with the
+ * easing map and blends the two nodes of both keyframes next to x. Nothing is
+ * allocated and no map is built while mapping.<br>
+ * <br>
+ * A Timeline is built by a Builder and immutable, so one instance can be shared
+ * by many threads.
+ *
+ * <pre>
+ * Timeline timeline = Timeline.builder().key(0, "x").key(40, "triangle").key(80, "exp 3")
+ * 		.easing("fullcos > invert").input(0, 800).output(0, 600).build();
+ * </pre>
+ *
+ * @author Ulrich Bing
+ *
+ */
+public final class Timeline {
+	private final float[] times;
+	// the nodes of all keyframes, each (resolution + 2) nodes long
+	private final float[] nodes;
+	private final int resolution;
+	private final int stride;
+	// null if the keyframes are blended linearly
+	private final Map easing;
+	private final ImmutableRange input, output;
+	private final MapMetrics metrics = new MapMetrics();
+
+	private Timeline(Builder builder) {
+		int count = builder.keys.size();
+		if (count == 0) {
+			throw new IllegalArgumentException("A Timeline needs at least one key.");
+		}
+		resolution = builder.resolution;
+		stride = resolution + 2;
+		times = new float[count];
+		// a single key is stored twice, so map() can always blend two keys
+		nodes = new float[Math.max(2, count) * stride];
+		for (int k = 0; k < count; k++) {
+			Key key = builder.keys.get(k);
+			times[k] = key.time;
+			System.arraycopy(Graph.getNodes(key.map, resolution), 0, nodes, k * stride, stride);
+		}
+		if (count == 1) {
+			System.arraycopy(nodes, 0, nodes, stride, stride);
+		}
+		easing = builder.easing;
+		ErrorAction onExceedRange = builder.onExceedRange != null ? builder.onExceedRange : Range.onExceedRange;
+		input = new ImmutableRange(builder.inputStart, builder.inputEnd, builder.inputRepeat, onExceedRange, metrics);
+		output = new ImmutableRange(builder.outputStart, builder.outputEnd, RepeatRange.Both, onExceedRange, metrics);
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Get the mapped value for x at time t. Before the first key the first map is
+	 * used, after the last key the last map. A NaN time counts as before the first
+	 * key.
+	 *
+	 * @param x
+	 *            The value to map.
+	 * @param t
+	 *            The time.
+	 * @return The mapped value.
+	 */
+	public float map(float x, float t) {
+		metrics.countEvaluations(1);
+		int k = getSegment(t);
+		float ratio = getRatio(k, t);
+		float section = input.normalize(x) * resolution;
+		int i = (int) section;
+		int a = k * stride + i;
+		int b = a + stride;
+		float y0 = nodes[a] + ratio * (nodes[b] - nodes[a]);
+		float y1 = nodes[a + 1] + ratio * (nodes[b + 1] - nodes[a + 1]);
+		// section is not negative, so (section - i) is the same as (section % 1)
+		return output.deNormalize(y0 + (section - i) * (y1 - y0));
+	}
+
+	/**
+	 * Get the mapped values for all values of an array at time t. The keyframes
+	 * are searched only once.
+	 *
+	 * @param in
+	 *            The values to map.
+	 * @param out
+	 *            The array for the mapped values, at least as long as in. It may
+	 *            be the same array as in.
+	 * @param t
+	 *            The time.
+	 * @return The array out.
+	 */
+	public float[] mapAll(float[] in, float[] out, float t) {
+		metrics.countEvaluations(in.length);
+		int k = getSegment(t);
+		float ratio = getRatio(k, t);
+		int offset = k * stride;
+		input.normalize(in, 0, out, 0, in.length);
+		for (int j = 0; j < in.length; j++) {
+			float section = out[j] * resolution;
+			int i = (int) section;
+			int a = offset + i;
+			int b = a + stride;
+			float y0 = nodes[a] + ratio * (nodes[b] - nodes[a]);
+			float y1 = nodes[a + 1] + ratio * (nodes[b + 1] - nodes[a + 1]);
+			out[j] = y0 + (section - i) * (y1 - y0);
+		}
+		output.deNormalize(out, 0, in.length);
+		return out;
+	}
+
+	// The index of the key before t, 0 for a single key or NaN.
+	private int getSegment(float t) {
+		int last = times.length - 1;
+		if (last == 0 || t <= times[0] || Float.isNaN(t)) {
+			return 0;
+		} else if (t >= times[last]) {
+			return last - 1;
+		}
+		int index = Arrays.binarySearch(times, t);
+		if (index >= 0) {
+			return Math.min(index, last - 1);
+		}
+		// index = -(insertion point) - 1, the key before t is insertion point - 1
+		return -index - 2;
+	}
+
+	// The eased position of t between key k and key k + 1.
+	private float getRatio(int k, float t) {
+		if (k + 1 == times.length || Float.isNaN(t)) {
+			return 0;
+		}
+		float ratio = (t - times[k]) / (times[k + 1] - times[k]);
+		ratio = Math.min(1, Math.max(0, ratio));
+		return easing == null ? ratio : easing.map(ratio);
+	}
+
+	public MapMetrics getMetrics() {
+		return metrics;
+	}
+
+	public int getKeyCount() {
+		return times.length;
+	}
+
+	public float getStart() {
+		return times[0];
+	}
+
+	public float getEnd() {
+		return times[times.length - 1];
+	}
+
+	@Override
+	public String toString() {
+		return "Timeline: " + times.length + " keys from '" + getStart() + "' to '" + getEnd() + "', resolution = "
+				+ resolution + "\n input: " + input + "\n output: " + output + "\n";
+	}
+
+	private static class Key {
+		final float time;
+		final Map map;
+
+		Key(float time, Map map) {
+			this.time = time;
+			this.map = map;
+		}
+	}
+
+	/**
+	 * The Builder of a Timeline. The resolution of the shared grid is that of
+	 * Precision.VeryHigh by default, input and output range are (0, 1) and the
+	 * keyframes are blended linearly.
+	 */
+	public static final class Builder {
+		private final ArrayList<Key> keys = new ArrayList<>();
+		private int resolution = Precision.VeryHigh.resolution;
+		private Map easing;
+		private float inputStart = 0, inputEnd = 1;
+		private RepeatRange inputRepeat = RepeatRange.Both;
+		private float outputStart = 0, outputEnd = 1;
+		private ErrorAction onExceedRange;
+
+		private Builder() {
+		}
+
+		/**
+		 * Adds a keyframe. The map is calculated exactly at the nodes of the grid.
+		 *
+		 * @param time
+		 *            The time of the keyframe, different from all other keys.
+		 * @param str
+		 *            The map-defining string.
+		 */
+		public Builder key(float time, String str) {
+			return key(time, new ComplexMap(str));
+		}
+
+		/**
+		 * Adds a keyframe. Only the curve of the map is used, not its ranges.
+		 *
+		 * @param time
+		 *            The time of the keyframe, different from all other keys.
+		 * @param map
+		 *            The map of the keyframe.
+		 */
+		public Builder key(float time, Map map) {
+			int index = 0;
+			while (index < keys.size() && keys.get(index).time < time) {
+				index++;
+			}
+			if (index < keys.size() && keys.get(index).time == time) {
+				throw new IllegalArgumentException("Timeline has already a key at time '" + time + "'.");
+			}
+			keys.add(index, new Key(time, map));
+			return this;
+		}
+
+		/**
+		 * Sets the easing between two keyframes. It maps the linear position
+		 * between both (0-1) to the ratio of the blend (0-1). A map given by
+		 * easing(Map) must not be changed after build().
+		 */
+		public Builder easing(String str) {
+			return easing(Map.create(str));
+		}
+
+		public Builder easing(Map easing) {
+			this.easing = easing;
+			return this;
+		}
+
+		/**
+		 * @param resolution
+		 *            The number of lines between the nodes of the shared grid.
+		 */
+		public Builder resolution(int resolution) {
+			if (resolution < 1) {
+				throw new IllegalArgumentException("Resolution '" + resolution + "' of a Timeline must be positive.");
+			}
+			this.resolution = resolution;
+			return this;
+		}
+
+		public Builder input(float start, float end) {
+			inputStart = start;
+			inputEnd = end;
+			return this;
+		}
+
+		public Builder input(float start, float end, RepeatRange repeat) {
+			inputRepeat = repeat;
+			return input(start, end);
+		}
+
+		public Builder output(float start, float end) {
+			outputStart = start;
+			outputEnd = end;
+			return this;
+		}
+
+		/**
+		 * Sets the ErrorAction of this Timeline, independent of later changes of
+		 * Range.onExceedRange.
+		 */
+		public Builder onExceedRange(ErrorAction onExceedRange) {
+			this.onExceedRange = onExceedRange;
+			return this;
+		}
+
+		public Timeline build() {
+			return new Timeline(this);
+		}
+	}
+}
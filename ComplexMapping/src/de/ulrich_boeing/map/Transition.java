@@ -0,0 +1,173 @@
+package de.ulrich_boeing.map;
+
+/**
+ * A Transition morphs a map into its target map like Map.map(x, ratio), but in
+ * the time of a single Graph lookup.<br>
+ * <br>
+ * Both maps are resampled once to nodes on a common grid. Because a Graph is
+ * linear between its nodes, the blend of two Graphs is the Graph of the blended
+ * nodes. setRatio() blends all nodes into a buffer, then map(x) is one lookup
+ * in this buffer. map(x, ratio) blends only the two nodes of the line x is on.
+ * <br>
+ * <br>
+ * Two Graphs keep their nodes, if their resolutions are equal or one is a
+ * multiple of the other. Other maps (e.g. a ComplexMap) are approximated by
+ * nodes on the grid. The input, output and ratio range are those of the main
+ * map.<br>
+ * Like a Map, a Transition must not be used by several threads while setRatio()
+ * is called.
+ *
+ * @author Ulrich Bing
+ *
+ */
+public class Transition {
+	private final float[] from, to;
+	// nodes of the last ratio given to setRatio()
+	private final float[] blended;
+	private final int resolution;
+	private final Range input, output, ratioRange;
+	private float normRatio;
+
+	/**
+	 * A Transition from a map to its target map.
+	 *
+	 * @param map
+	 *            A map with a target map.
+	 */
+	public Transition(Map map) {
+		this(map, getResolution(map, getTarget(map)));
+	}
+
+	/**
+	 * A Transition from a map to its target map with a given resolution of the
+	 * common grid.
+	 *
+	 * @param map
+	 *            A map with a target map.
+	 * @param resolution
+	 *            The number of lines between the nodes.
+	 */
+	public Transition(Map map, int resolution) {
+		if (resolution < 1) {
+			throw new IllegalArgumentException("Resolution '" + resolution + "' of a Transition must be positive.");
+		}
+		this.resolution = resolution;
+		from = Graph.getNodes(map, resolution);
+		to = Graph.getNodes(getTarget(map), resolution);
+		blended = from.clone();
+		input = map.getInputRange();
+		output = map.getOutputRange();
+		ratioRange = map.getRatioRange();
+	}
+
+	private static Map getTarget(Map map) {
+		if (map.getTargetMap() == null) {
+			throw new IllegalArgumentException("No targetMap defined, a Transition needs one.");
+		}
+		return map.getTargetMap();
+	}
+
+	/*
+	 * The resolution of a Graph, or the least common multiple of two Graphs'
+	 * resolutions, so no node is lost.
+	 */
+	private static int getResolution(Map map, Map target) {
+		int a = map instanceof Graph ? ((Graph) map).getResolution() : 0;
+		int b = target instanceof Graph ? ((Graph) target).getResolution() : 0;
+		if (a == 0 && b == 0) {
+			int resolution = Graph.defaultPrecision.resolution;
+			return resolution > 0 ? resolution : Precision.VeryHigh.resolution;
+		} else if (a == 0 || b == 0) {
+			return Math.max(a, b);
+		}
+		long lcm = (long) a / gcd(a, b) * b;
+		return lcm <= Graph.MAX_RESOLUTION ? (int) lcm : Math.max(a, b);
+	}
+
+	private static int gcd(int a, int b) {
+		while (b != 0) {
+			int r = a % b;
+			a = b;
+			b = r;
+		}
+		return a;
+	}
+
+	/**
+	 * Blends the nodes of both maps for map(x) and mapAll().
+	 *
+	 * @param ratio
+	 *            The ratio between main and target map.
+	 * @return This Transition.
+	 */
+	public Transition setRatio(float ratio) {
+		float normRatio = ratioRange.normalize(ratio);
+		if (normRatio != this.normRatio) {
+			this.normRatio = normRatio;
+			for (int i = 0; i < blended.length; i++) {
+				blended[i] = from[i] + normRatio * (to[i] - from[i]);
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Get the mapped value for x with the ratio of the last call of setRatio()
+	 * (or 0).
+	 */
+	public float map(float x) {
+		float section = input.normalize(x) * resolution;
+		int i = (int) section;
+		// section is not negative, so (section - i) is the same as (section % 1)
+		float y = blended[i] + (section - i) * (blended[i + 1] - blended[i]);
+		return output.deNormalize(y);
+	}
+
+	/**
+	 * Get the mapped value for x with the given ratio. Only the two nodes next to
+	 * x are blended, the ratio of setRatio() is not changed.
+	 *
+	 * @param ratio
+	 *            The ratio between main and target map.
+	 */
+	public float map(float x, float ratio) {
+		float r = ratioRange.normalize(ratio);
+		float section = input.normalize(x) * resolution;
+		int i = (int) section;
+		float y0 = from[i] + r * (to[i] - from[i]);
+		float y1 = from[i + 1] + r * (to[i + 1] - from[i + 1]);
+		return output.deNormalize(y0 + (section - i) * (y1 - y0));
+	}
+
+	/**
+	 * Get the mapped values for all values of an array with the ratio of the last
+	 * call of setRatio().
+	 *
+	 * @param in
+	 *            The values to map.
+	 * @param out
+	 *            The array for the mapped values, at least as long as in. It may
+	 *            be the same array as in.
+	 * @return The array out.
+	 */
+	public float[] mapAll(float[] in, float[] out) {
+		input.normalize(in, 0, out, 0, in.length);
+		for (int j = 0; j < in.length; j++) {
+			float section = out[j] * resolution;
+			int i = (int) section;
+			out[j] = blended[i] + (section - i) * (blended[i + 1] - blended[i]);
+		}
+		output.deNormalize(out, 0, in.length);
+		return out;
+	}
+
+	public int getResolution() {
+		return resolution;
+	}
+
+	@Override
+	public String toString() {
+		return "Transition: resolution = " + resolution + ", ratio = " + normRatio + "\n input: " + input
+				+ "\n output: " + output + "\n";
+	}
+}
@@ -0,0 +1,17 @@
+package de.ulrich_boeing.map;
+
+/**
+ * Runs all checks, exits with 1 if one of them failed.
+ *
+ * @author Ulrich Bing
+ *
+ */
+class AllChecks {
+
+	private AllChecks() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		Check.runAll(new CalculateAllCheck(), new FlatMapCheck(), new TimelineCheck(), new OptimizerCheck(), new ImmutableMapCheck());
+	}
+}
@@ -0,0 +1,53 @@
+package de.ulrich_boeing.map;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks the calculateAll() of each StepType against calculate(): the
+ * overriding methods replace the branches of calculate() by Math.min and
+ * Math.max, or fall back to calculate() for some parameters, so every value
+ * must be bitwise equal to the value of calculate(). The parameters and inputs
+ * are those of StepCases.<br>
+ * Values outside the block of calculateAll() must not be changed.
+ *
+ * @author Ulrich Bing
+ *
+ */
+class CalculateAllCheck extends Check {
+	private static final int VALUES = 2000;
+	// values before and after the block of calculateAll()
+	private static final int MARGIN = 3;
+
+	private final Random random = new Random(11);
+
+	public static void main(String[] args) throws Exception {
+		runAll(new CalculateAllCheck());
+	}
+
+	@Override
+	void run() {
+		for (StepType type : StepType.values()) {
+			for (float[] p : StepCases.parameters(type)) {
+				check(type, type.evaluateParameter(p));
+			}
+		}
+	}
+
+	private void check(StepType type, float[] p) {
+		float[] x = StepCases.inputs(p, VALUES, random);
+		float[] all = new float[x.length + 2 * MARGIN];
+		Arrays.fill(all, -7);
+		System.arraycopy(x, 0, all, MARGIN, x.length);
+		type.calculateAll(all, MARGIN, x.length, p);
+
+		String name = type + " " + Arrays.toString(p);
+		for (int i = 0; i < x.length; i++) {
+			checkSame(type.calculate(x[i], p), all[MARGIN + i], name + " at x = " + x[i]);
+		}
+		for (int i = 0; i < MARGIN; i++) {
+			checkSame(-7, all[i], name + " changed the value " + i + " before the block");
+			checkSame(-7, all[all.length - 1 - i], name + " changed the value " + i + " after the block");
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package de.ulrich_boeing.map;
+
+/**
+ * The base of the checks in this source folder. The project has no test
+ * framework, so a check is a class with a main method: run() calls check() for
+ * each property, runAll() prints the number of failed checks and exits with 1 if
+ * there is any.<br>
+ * The checks are in the package of the library, so they can compare the
+ * package-private classes (e.g. an optimized and an unoptimized ComplexMap).
+ * All checks are run by AllChecks.
+ *
+ * @author Ulrich Bing
+ *
+ */
+abstract class Check {
+	// only the first failures of a check are printed
+	private static final int MAX_PRINTED = 10;
+
+	private int count, failures;
+
+	abstract void run() throws Exception;
+
+	void check(boolean condition, String message) {
+		count++;
+		if (!condition) {
+			failures++;
+			if (failures <= MAX_PRINTED) {
+				System.out.println("  failed: " + message);
+			}
+		}
+	}
+
+	/**
+	 * Checks two values of normMap(), both NaN counts as equal.
+	 */
+	void checkClose(float expected, float actual, float tolerance, String message) {
+		check(Math.abs(expected - actual) <= tolerance || (Float.isNaN(expected) && Float.isNaN(actual)),
+				message + ": expected " + expected + ", but was " + actual);
+	}
+
+	void checkSame(float expected, float actual, String message) {
+		check(Float.floatToIntBits(expected) == Float.floatToIntBits(actual),
+				message + ": expected " + expected + ", but was " + actual);
+	}
+
+	static void runAll(Check... checks) throws Exception {
+		int failures = 0;
+		for (Check check : checks) {
+			System.out.println(check.getClass().getSimpleName() + ":");
+			check.run();
+			System.out.println("  " + check.count + " checks, " + check.failures + " failed");
+			failures += check.failures;
+		}
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+}
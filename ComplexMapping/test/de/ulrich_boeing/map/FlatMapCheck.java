@@ -0,0 +1,70 @@
+package de.ulrich_boeing.map;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks FlatMap against ComplexMap: the operations of a FlatMap copy the
+ * formulas of StepType.calculate(), so every value of normMap() must be bitwise
+ * equal to the value of the ComplexMap it is built from. Each case of
+ * StepCases is checked as a single step, after the step of the case before it
+ * and as a second Mapping, with the Optimizer on and off and with each
+ * Accuracy.
+ *
+ * @author Ulrich Bing
+ *
+ */
+class FlatMapCheck extends Check {
+	private static final int VALUES = 500;
+
+	private final Random random = new Random(5);
+
+	public static void main(String[] args) throws Exception {
+		runAll(new FlatMapCheck());
+	}
+
+	@Override
+	void run() {
+		List<StepExpr> steps = new ArrayList<>();
+		for (StepType type : StepType.values()) {
+			for (float[] p : StepCases.parameters(type)) {
+				steps.add(StepExpr.of(type.name(), p));
+			}
+		}
+		StepExpr before = StepExpr.of("random", 6).withSeed(42);
+		checkValues(MapExpr.of(before), new float[0]);
+		checkValues(MapExpr.of(StepExpr.of("squarerandom", 6).withSeed(7)), new float[0]);
+
+		for (StepExpr step : steps) {
+			float[] p = step.getParameters();
+			checkValues(MapExpr.of(step), p);
+			if (!before.getName().equals(StepType.weight.name())) {
+				checkValues(MapExpr.of(before, step), p);
+			}
+			checkValues(MapExpr.of(before).and(step), p);
+			before = step;
+		}
+	}
+
+	private void checkValues(MapExpr expr, float[] p) {
+		check(expr, p, new ComplexMap(expr, false));
+		check(expr, p, new ComplexMap(expr, true));
+		for (Accuracy accuracy : Accuracy.values()) {
+			check(expr, p, new ComplexMap(expr, accuracy));
+		}
+	}
+
+	private void check(MapExpr expr, float[] p, ComplexMap complexMap) {
+		FlatMap flatMap = new FlatMap(complexMap);
+		boolean isRandom = expr.toString().contains("random");
+		for (float x : StepCases.inputs(p, VALUES, random)) {
+			// the random steps only take values inside 0-1
+			if (isRandom && !(x >= 0 && x <= 1)) {
+				continue;
+			}
+			checkSame(complexMap.normMap(x), flatMap.normMap(x),
+					"'" + complexMap.getRealDefString() + "' " + complexMap.accuracy + " at x = " + x);
+		}
+	}
+}
@@ -0,0 +1,149 @@
+package de.ulrich_boeing.map;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import de.ulrich_boeing.map.Range.RepeatRange;
+
+/**
+ * Stresses one shared ImmutableMap with many threads: all of them map the same
+ * inputs with map(x), map(x, ratio) and both mapAll() at the same time, while
+ * another thread changes the shared mutable state around it (Range.onExceedRange,
+ * a mutable Map of the same curve, new maps by toBuilder()). Every result must
+ * be bitwise equal to the result of a single thread, and the counters of the
+ * MapMetrics must not lose a count.
+ *
+ * @author Ulrich Bing
+ *
+ */
+class ImmutableMapCheck extends Check {
+	private static final int THREADS = 16;
+	private static final int ROUNDS = 20;
+	private static final int VALUES = 4096;
+	private static final float RATIO = 3;
+
+	public static void main(String[] args) throws Exception {
+		runAll(new ImmutableMapCheck());
+	}
+
+	@Override
+	void run() throws Exception {
+		boolean countEvaluations = MapMetrics.isCountEvaluations();
+		MapMetrics.setCountEvaluations(true);
+		try {
+			// a ComplexMap and a Graph, inputs outside the range are repeated or limited
+			stress("ComplexMap", ImmutableMap.builder("triangle > exp 3 & sin", Precision.Highest).input(-2, 5).output(10, 100)
+					.ratioRange(0, 10).target("invert > narrow 0.2 0.8").onExceedRange(ErrorAction.Nothing).build());
+			stress("Graph", ImmutableMap.builder("peak 0.3 > mirror 2", Precision.High).input(800, 0, RepeatRange.No)
+					.output(0, 255).target("exp -2", Precision.VeryHigh).onExceedRange(ErrorAction.Nothing).build());
+		} finally {
+			MapMetrics.setCountEvaluations(countEvaluations);
+		}
+	}
+
+	private void stress(String name, final ImmutableMap map) throws Exception {
+		Random random = new Random(7);
+		final float start = map.getInputStart(), end = map.getInputEnd();
+		final float[] in = new float[VALUES];
+		for (int i = 0; i < in.length; i++) {
+			// a third of the inputs is outside the range
+			in[i] = start + (random.nextFloat() * 1.5f - 0.25f) * (end - start);
+		}
+
+		// the results and counts of one round by a single thread
+		final float[] single = new float[VALUES], blended = new float[VALUES];
+		for (int i = 0; i < VALUES; i++) {
+			single[i] = map.map(in[i]);
+			blended[i] = map.map(in[i], RATIO);
+		}
+		final float[] all = map.mapAll(in, new float[VALUES]);
+		final float[] allBlended = map.mapAll(in, 0, new float[VALUES], 0, VALUES, RATIO);
+		MapMetrics.Snapshot round = map.getMetrics().snapshot();
+		map.getMetrics().reset();
+
+		final CountDownLatch ready = new CountDownLatch(THREADS);
+		final CountDownLatch go = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1);
+		List<Future<Integer>> futures = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			futures.add(executor.submit(() -> {
+				ready.countDown();
+				go.await();
+				int wrong = 0;
+				float[] out = new float[VALUES];
+				for (int r = 0; r < ROUNDS; r++) {
+					for (int i = 0; i < VALUES; i++) {
+						wrong += same(single[i], map.map(in[i])) ? 0 : 1;
+						wrong += same(blended[i], map.map(in[i], RATIO)) ? 0 : 1;
+					}
+					map.mapAll(in, out);
+					wrong += countDifferences(all, out);
+					map.mapAll(in, 0, out, 0, VALUES, RATIO);
+					wrong += countDifferences(allBlended, out);
+				}
+				return wrong;
+			}));
+		}
+		Future<?> disturber = executor.submit(() -> {
+			go.await();
+			ErrorAction action = Range.onExceedRange;
+			Map mutable = Map.create("triangle > exp 3 & sin");
+			try {
+				for (int k = 0; !Thread.currentThread().isInterrupted(); k++) {
+					Range.onExceedRange = k % 2 == 0 ? ErrorAction.Nothing : ErrorAction.Exception;
+					mutable.setRange(0, k % 100 + 1, k, 2 * k + 1);
+					mutable.setTargetMap(k % 3 == 0 ? "invert" : "sin");
+					map.toBuilder().output(0, k).build().map(k);
+				}
+			} finally {
+				Range.onExceedRange = action;
+			}
+			return null;
+		});
+
+		ready.await();
+		go.countDown();
+		int wrong = 0;
+		try {
+			for (Future<Integer> future : futures) {
+				wrong += future.get();
+			}
+		} catch (ExecutionException e) {
+			check(false, name + ": " + e.getCause());
+		} finally {
+			disturber.cancel(true);
+			executor.shutdownNow();
+		}
+		check(executor.awaitTermination(10, TimeUnit.SECONDS), "the threads did not end");
+		check(wrong == 0, name + ": " + wrong + " results differ from the results of a single thread");
+
+		// the counters must not lose a count between the threads
+		MapMetrics.Snapshot snapshot = map.getMetrics().snapshot();
+		long rounds = (long) THREADS * ROUNDS;
+		check(snapshot.getEvaluations() == rounds * round.getEvaluations(),
+				name + " evaluations: expected " + rounds * round.getEvaluations() + ", but was " + snapshot.getEvaluations());
+		check(snapshot.getBelowRange() == rounds * round.getBelowRange(),
+				name + " belowRange: expected " + rounds * round.getBelowRange() + ", but was " + snapshot.getBelowRange());
+		check(snapshot.getAboveRange() == rounds * round.getAboveRange(),
+				name + " aboveRange: expected " + rounds * round.getAboveRange() + ", but was " + snapshot.getAboveRange());
+	}
+
+	private static boolean same(float expected, float actual) {
+		return Float.floatToIntBits(expected) == Float.floatToIntBits(actual);
+	}
+
+	private static int countDifferences(float[] expected, float[] actual) {
+		int count = 0;
+		for (int i = 0; i < expected.length; i++) {
+			count += same(expected[i], actual[i]) ? 0 : 1;
+		}
+		return count;
+	}
+}
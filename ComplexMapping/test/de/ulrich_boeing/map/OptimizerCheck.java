@@ -0,0 +1,143 @@
+package de.ulrich_boeing.map;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Checks each rewrite of the Optimizer: a definition which matches the rule,
+ * with random parameters and a random step before it, must be shortened by the
+ * Optimizer, and the optimized map must calculate the same values as the
+ * unoptimized map, apart from float rounding. The same values are checked for
+ * definitions which just miss the condition of a rule (e.g. 'repeat a > repeat
+ * b' with a fractional b).<br>
+ * The unoptimized map can be the less precise one: 'exp -a > exp -b' calculates
+ * 1 - (1 - y) twice, which loses the small values of (1 - y)^a near y = 1,
+ * 'invert > exp a > invert' loses small values of y the same way. So
+ * where a rule has an exact reference in double, a difference passes if the
+ * optimized value is closer to it.
+ *
+ * @author Ulrich Bing
+ *
+ */
+class OptimizerCheck extends Check {
+	private static final int DEFINITIONS = 500;
+	private static final int VALUES = 1000;
+	private static final float TOLERANCE = 1e-4f;
+	// steps before the rewritten steps, so the rules are also applied inside a Mapping
+	private static final String[] PREFIXES = { "", "triangle 0.3 > ", "sin > ", "exp 2 > ", "peak 0.7 > " };
+
+	private final Random random = new Random(42);
+
+	public static void main(String[] args) throws Exception {
+		runAll(new OptimizerCheck());
+	}
+
+	@Override
+	void run() {
+		for (int i = 0; i < DEFINITIONS; i++) {
+			String prefix = PREFIXES[random.nextInt(PREFIXES.length)];
+			float a = between(0.2f, 5), b = between(0.2f, 5);
+			float sign = random.nextBoolean() ? 1 : -1;
+
+			// 'x', 'exp 1' and 'weight 1'
+			checkRule(prefix + "x > exp 1 > sin > weight 1", false);
+			// 'invert > invert'
+			checkRule(prefix + "invert > invert > triangle " + format(between(0.1f, 0.9f)), false);
+			// 'invert > exp a > invert'
+			double exponent = Float.parseFloat(format(a));
+			checkRule(prefix, "invert > exp " + format(sign * a) + " > invert", false,
+					sign > 0 ? y -> 1 - Math.pow(1 - y, exponent) : y -> Math.pow(y, exponent));
+			// 'exp a > exp b' with the same sign
+			double e = exponent * Float.parseFloat(format(b));
+			checkRule(prefix, "exp " + format(sign * a) + " > exp " + format(sign * b), false,
+					sign > 0 ? y -> Math.pow(y, e) : y -> 1 - Math.pow(1 - y, e));
+			checkValues(prefix + "exp " + format(sign * a) + " > exp " + format(-sign * b), false);
+			// 'repeat a > repeat b' with an integer b, 'repeat 1' is not allowed
+			checkRule(prefix + "repeat " + format(between(1.1f, 4)) + " > repeat " + (2 + random.nextInt(3)), true);
+			checkValues(prefix + "repeat " + format(between(1.1f, 4)) + " > repeat " + format(between(1.1f, 1.9f)),
+					true);
+			// 'narrow p0 p1 > narrow q0 q1'
+			float p0 = between(0, 0.5f), p1 = between(0.5f, 1);
+			float q0 = between(0, 0.5f), q1 = between(0.5f, 1);
+			checkRule(prefix + "narrow " + format(p0) + " " + format(p1) + " > narrow " + format(q0) + " "
+					+ format(q1), false);
+			checkValues(prefix + "narrow " + format(p0) + " " + format(p1) + " > narrow " + format(-q0 - 0.1f) + " "
+					+ format(q1), false);
+			// steps before and after a constant
+			checkRule(prefix + "constant " + format(between(0, 1)) + " > exp " + format(a) + " > triangle "
+					+ format(between(0.1f, 0.9f)), false);
+			// equal weights of all Mappings
+			String weight = format(a);
+			checkRule(prefix + "triangle > weight " + weight + " & sin > weight " + weight, false);
+			checkValues(prefix + "triangle > weight " + weight + " & sin > weight " + format(b), false);
+		}
+	}
+
+	private void checkRule(String definition, boolean repeated) {
+		checkRule("", definition, repeated, null);
+	}
+
+	/**
+	 * @param prefix
+	 *            Steps before the rewritten steps, ending with " > ".
+	 * @param repeated
+	 *            If true, the result is repeated by a last 'repeat' step, so a
+	 *            rounding difference at its jump can change a value by almost 1.
+	 * @param reference
+	 *            The exact result of the rewritten steps for the result of the
+	 *            prefix, or null.
+	 */
+	private void checkRule(String prefix, String steps, boolean repeated, DoubleUnaryOperator reference) {
+		String definition = prefix + steps;
+		ComplexMap optimized = new ComplexMap(definition, true);
+		ComplexMap unoptimized = new ComplexMap(definition, false);
+		check(countSteps(optimized) < countSteps(unoptimized),
+				"'" + definition + "' is not optimized: '" + optimized.getRealDefString() + "'");
+		checkValues(prefix, steps, repeated, reference);
+	}
+
+	// Checks the values of a definition, which may or may not be rewritten.
+	private void checkValues(String definition, boolean repeated) {
+		checkValues("", definition, repeated, null);
+	}
+
+	private void checkValues(String prefix, String steps, boolean repeated, DoubleUnaryOperator reference) {
+		String definition = prefix + steps;
+		ComplexMap optimized = new ComplexMap(definition, true);
+		ComplexMap unoptimized = new ComplexMap(definition, false);
+		ComplexMap prefixMap = new ComplexMap(prefix + "x", false);
+		for (int i = 0; i <= VALUES; i++) {
+			float x = (float) i / VALUES;
+			float expected = unoptimized.normMap(x);
+			float actual = optimized.normMap(x);
+			float difference = Math.abs(expected - actual);
+			if (repeated && difference > 0.5f) {
+				difference = 1 - difference;
+			}
+			boolean closer = false;
+			if (reference != null) {
+				double exact = reference.applyAsDouble(prefixMap.normMap(x));
+				closer = Math.abs(actual - exact) <= Math.abs(expected - exact) + TOLERANCE;
+			}
+			check(difference <= TOLERANCE || closer, "'" + definition + "' -> '" + optimized.getRealDefString()
+					+ "' at x = " + x + ": expected " + expected + ", but was " + actual);
+		}
+	}
+
+	private static int countSteps(ComplexMap map) {
+		int count = 0;
+		for (Mapping mapping : map.mappings) {
+			count += mapping.steps.length;
+		}
+		return count;
+	}
+
+	private float between(float start, float end) {
+		return start + random.nextFloat() * (end - start);
+	}
+
+	private static String format(float value) {
+		return String.format(Locale.ROOT, "%.3f", value);
+	}
+}
@@ -0,0 +1,94 @@
+package de.ulrich_boeing.map;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The parameters and inputs of the checks which compare two ways of
+ * calculating a step: for each StepType the parameters include the boundaries
+ * of the branches (e.g. 'narrow' with equal parameters or p[0] greater than
+ * p[1], 'trapez' with p[0] = 0 or p[1] = 1), the inputs include the parameters
+ * and their neighbouring floats, -0, values outside 0-1, NaN and the
+ * infinities.
+ *
+ * @author Ulrich Bing
+ *
+ */
+class StepCases {
+	private static final float[] SPECIAL = { 0, -0f, 1, 0.5f, -1, 2, Float.MIN_VALUE, -Float.MIN_VALUE,
+			Math.nextDown(1f), Math.nextUp(1f), Float.NaN, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY };
+
+	private StepCases() {
+	}
+
+	/**
+	 * @return The unevaluated parameters of each case of the type. A type without
+	 *         parameters has one case without parameters, the random types have
+	 *         none.
+	 */
+	static float[][] parameters(StepType type) {
+		switch (type) {
+		case constant:
+			return single(0, 0.5f, 1);
+		case narrow:
+			return new float[][] { { 0.2f, 0.8f }, { 0, 1 }, { 0.5f, 0.5f }, { 0, 0 }, { 1, 1 },
+					{ 0.3f, Math.nextUp(0.3f) }, { -0.5f, 1.5f }, { 0.8f, 0.2f }, { 0.5f, Math.nextDown(0.5f) } };
+		case exp:
+		case outward:
+		case inward:
+			return single(1, -1, 2, -2, 0.5f, -0.5f, 5, -5);
+		case peak:
+			return single(0.8f, 0.3f, 0.5f, Math.nextDown(0.5f), 0.001f, 0.999f);
+		case triangle:
+			return single(0.5f, 0.3f, 0.7f, 0.001f, 0.999f, Float.MIN_VALUE, Math.nextDown(1f));
+		case trapez:
+			return new float[][] { { 0.3f, 0.7f }, { 0.5f, 0.5f }, { Float.MIN_VALUE, 0.5f },
+					{ 0.5f, Math.nextDown(1f) }, { Float.MIN_VALUE, Math.nextDown(1f) }, { 0.4f, Math.nextUp(0.4f) },
+					{ 0, 0.5f }, { 0.5f, 1 }, { 0, 1 }, { 0.7f, 0.3f }, { -0.2f, 0.5f }, { 0.5f, 1.2f } };
+		case random:
+		case squarerandom:
+			return new float[0][];
+		case repeat:
+			return single(2, 1.5f, 3.7f, 0.5f, -2);
+		case mirror:
+			return single(1, 2, 1.5f, 0.5f, -1);
+		case weight:
+			return single(1, 0, -1, 0.5f, 3);
+		default:
+			return new float[][] { {} };
+		}
+	}
+
+	private static float[][] single(float... parameters) {
+		float[][] p = new float[parameters.length][];
+		for (int i = 0; i < p.length; i++) {
+			p[i] = new float[] { parameters[i] };
+		}
+		return p;
+	}
+
+	/**
+	 * @return The special values, the parameters with their neighbouring floats
+	 *         and count random values, most of them inside 0-1.
+	 */
+	static float[] inputs(float[] p, int count, Random random) {
+		List<Float> values = new ArrayList<>();
+		for (float value : SPECIAL) {
+			values.add(value);
+		}
+		for (float value : p) {
+			values.add(value);
+			values.add(Math.nextDown(value));
+			values.add(Math.nextUp(value));
+		}
+		for (int i = 0; i < count; i++) {
+			values.add(i % 4 == 0 ? random.nextFloat() * 3 - 1 : random.nextFloat());
+		}
+		float[] x = new float[values.size()];
+		for (int i = 0; i < x.length; i++) {
+			x[i] = values.get(i);
+		}
+		return x;
+	}
+}
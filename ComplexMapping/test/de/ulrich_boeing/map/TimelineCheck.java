@@ -0,0 +1,53 @@
+package de.ulrich_boeing.map;
+
+/**
+ * Checks the search of the keyframes of a Timeline at the edges of the time
+ * axis: a time before the first key, NaN and -Infinity must give the values of
+ * the first key, a time after the last key and Infinity those of the last key.
+ * map() and mapAll() must give the same values for 1, 2 and 3 keys at these
+ * times, at the keys and between them.
+ *
+ * @author Ulrich Bing
+ *
+ */
+class TimelineCheck extends Check {
+	private static final String[] KEYS = { "triangle", "exp 3", "narrow 0.2 0.8 > sin" };
+	private static final float[] INPUTS = { 0, 100, 399.5f, 800, -50, 900, Float.NaN };
+
+	public static void main(String[] args) throws Exception {
+		runAll(new TimelineCheck());
+	}
+
+	@Override
+	void run() {
+		for (int count = 1; count <= KEYS.length; count++) {
+			Timeline.Builder builder = Timeline.builder().input(0, 800).output(0, 600)
+					.onExceedRange(ErrorAction.Nothing);
+			for (int k = 0; k < count; k++) {
+				builder.key(40 * k, KEYS[k]);
+			}
+			Timeline timeline = builder.build();
+			float first = timeline.getStart(), last = timeline.getEnd();
+
+			checkTime(timeline, Float.NaN, first);
+			checkTime(timeline, Float.NEGATIVE_INFINITY, first);
+			checkTime(timeline, first - 10, first);
+			checkTime(timeline, Float.POSITIVE_INFINITY, last);
+			checkTime(timeline, last + 10, last);
+			for (float t = first; t <= last; t += 10) {
+				checkTime(timeline, t, t);
+			}
+		}
+	}
+
+	// t must give the values of time
+	private void checkTime(Timeline timeline, float t, float time) {
+		String name = timeline.getKeyCount() + " keys at t = " + t;
+		float[] all = timeline.mapAll(INPUTS, new float[INPUTS.length], t);
+		for (int i = 0; i < INPUTS.length; i++) {
+			float expected = timeline.map(INPUTS[i], time);
+			checkSame(expected, timeline.map(INPUTS[i], t), name + ", x = " + INPUTS[i]);
+			checkSame(expected, all[i], name + ", mapAll x = " + INPUTS[i]);
+		}
+	}
+}
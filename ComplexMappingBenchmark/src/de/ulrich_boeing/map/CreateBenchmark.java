@@ -0,0 +1,60 @@
+package de.ulrich_boeing.map;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the creation of maps from definition strings, with and without the
+ * Graphs in the GraphCache. Each call creates the next of the fixed
+ * definitions. Without the cache its maximum weight is 0, so every Graph is
+ * calculated again. A setup per invocation would cost more than the creation
+ * of a cached map.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CreateBenchmark {
+	@Param({ "Low", "High", "VeryHigh", "Highest", "Flat" })
+	public Precision precision;
+
+	@Param({ "true", "false" })
+	public boolean cached;
+
+	private int i;
+
+	@Setup(Level.Trial)
+	public void setUpCache() {
+		GraphCache.clear();
+		if (!cached) {
+			GraphCache.setMaxWeight(0);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void resetCache() {
+		// the default weight
+		GraphCache.setMaxWeight(1 << 20);
+	}
+
+	@Benchmark
+	public Map create() {
+		i = (i + 1) % Inputs.DEFINITIONS.length;
+		return Map.create(Inputs.DEFINITIONS[i], precision);
+	}
+}
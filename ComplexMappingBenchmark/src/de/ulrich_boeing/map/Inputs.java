@@ -0,0 +1,36 @@
+package de.ulrich_boeing.map;
+
+import java.util.Random;
+
+/**
+ * Input values and definitions shared by the benchmarks. Everything is
+ * generated with fixed seeds, so the results of different runs and releases
+ * can be compared.
+ */
+class Inputs {
+	// A power of two, so the index of the next input is masked, not checked.
+	static final int SIZE = 1024;
+
+	static final String[] DEFINITIONS = { "triangle > invert > exp 3 & sin", "narrow 0.2, 0.8 > peak 0.3",
+			"exp 4 > repeat 3 > mirror", "trapez 0.1 0.6 > outward 3 & cos > weight 2", "fullsin > exp -2",
+			"narrow 0.0, 0.5 > exp 4", "narrow 0.4 0.99 > triangle", "inward 2 > fullcos & peak 0.6 > exp 0.5" };
+
+	private Inputs() {
+	}
+
+	/**
+	 * @param order
+	 *            "random" for evenly distributed random values, "sequential" for
+	 *            ascending, evenly spaced values.
+	 * @return SIZE values between start and end.
+	 */
+	static float[] get(String order, float start, float end) {
+		float[] inputs = new float[SIZE];
+		Random random = new Random(42);
+		for (int i = 0; i < SIZE; i++) {
+			float ratio = order.equals("random") ? random.nextFloat() : (float) i / (SIZE - 1);
+			inputs[i] = start + ratio * (end - start);
+		}
+		return inputs;
+	}
+}
@@ -0,0 +1,72 @@
+package de.ulrich_boeing.map;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the evaluation of complete maps with every Precision, that is
+ * ComplexMap (Highest), FlatMap (Flat) and Graphs of all resolutions:
+ * map(x), map(x, ratio) and mapAll() per value, for random and sequential
+ * input.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MapBenchmark {
+	@Param({ "triangle > invert > exp 3 & sin", "narrow 0.2, 0.8 > peak 0.3", "exp 4 > repeat 3 > mirror" })
+	public String definition;
+
+	@Param({ "Low", "Normal", "High", "VeryHigh", "Highest", "Flat" })
+	public Precision precision;
+
+	@Param({ "random", "sequential" })
+	public String order;
+
+	private Map map;
+	private float[] inputs, outputs;
+	private int i;
+
+	@Setup
+	public void setup() {
+		map = Map.create(definition, precision).setTargetMap("fullsin > exp 2", precision);
+		map.setRange(0, 800, 600, 0);
+		inputs = Inputs.get(order, 0, 800);
+		outputs = new float[Inputs.SIZE];
+	}
+
+	@Benchmark
+	public float map() {
+		return map.map(next());
+	}
+
+	@Benchmark
+	public float mapRatio() {
+		return map.map(next(), 0.5f);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(Inputs.SIZE)
+	public float[] mapAll() {
+		return map.mapAll(inputs, outputs);
+	}
+
+	private float next() {
+		i = (i + 1) & (Inputs.SIZE - 1);
+		return inputs[i];
+	}
+}
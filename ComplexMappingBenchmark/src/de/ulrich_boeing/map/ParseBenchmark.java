@@ -0,0 +1,99 @@
+package de.ulrich_boeing.map;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the throughput of the Parser with the former parsing based on
+ * regular expressions (String.replaceAll, String.split and StepType.valueOf).
+ * Both build the same Mappings and Steps. 'expr' builds them from an already
+ * parsed MapExpr, as Map.create(MapExpr) does without any string.
+ *
+ * @author Ulrich Bing
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ParseBenchmark {
+	private static final MapExpr[] EXPRESSIONS = new MapExpr[Inputs.DEFINITIONS.length];
+
+	static {
+		for (int i = 0; i < EXPRESSIONS.length; i++) {
+			EXPRESSIONS[i] = MapExpr.parse(Inputs.DEFINITIONS[i]);
+		}
+	}
+
+	private int i;
+
+	@Benchmark
+	public Mapping[] regex() {
+		return parseLegacy(next());
+	}
+
+	@Benchmark
+	public Mapping[] parser() {
+		return Parser.parse(next()).toMappings();
+	}
+
+	@Benchmark
+	public Mapping[] expr() {
+		next();
+		return EXPRESSIONS[i].toMappings();
+	}
+
+	private String next() {
+		i = (i + 1) % Inputs.DEFINITIONS.length;
+		return Inputs.DEFINITIONS[i];
+	}
+
+	/*
+	 * The former parsing of ComplexMap.build, Mapping.build and Step.build.
+	 */
+	static Mapping[] parseLegacy(String str) {
+		str = str.replaceAll("[\\t\\n]", " ");
+		str = str.replaceAll("^[ >&]+", "").replaceAll("[ >&]+$", "");
+		str = str.replaceAll(">(\\s*>)+", ">");
+		str = str.replaceAll("[&>](\\s*[&>])+", "&");
+		str = str.toLowerCase();
+		if (str.length() == 0) {
+			str = "x";
+		}
+
+		String[] mappingStrings = str.split("\\s*&\\s*");
+		Mapping[] mappings = new Mapping[mappingStrings.length];
+		for (int i = 0; i < mappings.length; i++) {
+			String[] stepStrings = mappingStrings[i].split("\\s*>\\s*");
+			Step[] steps = new Step[stepStrings.length];
+			for (int j = 0; j < steps.length; j++) {
+				String[] arr = stepStrings[j].split("[\\s,]+");
+				StepType type;
+				try {
+					type = StepType.valueOf(arr[0]);
+				} catch (IllegalArgumentException e) {
+					throw new RuntimeException("'" + arr[0] + "' is not a valid operation for Map.");
+				}
+				// only the needed parameters are parsed, surplus words are counted
+				float[] values = new float[Math.min(arr.length - 1, type.parameterNeeded)];
+				for (int k = 0; k < values.length; k++) {
+					values[k] = Float.parseFloat(arr[k + 1]);
+				}
+				steps[j] = new Step(type, values, arr.length - 1);
+			}
+			mappings[i] = new Mapping(steps);
+		}
+		return mappings;
+	}
+}
@@ -0,0 +1,62 @@
+package de.ulrich_boeing.map;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures every StepType on its own with default parameters, as a single value
+ * (ComplexMap.normMap) and per value of a block (ComplexMap.normMapAll). The
+ * ranges of Map are not part of the measurement.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StepTypeBenchmark {
+	@Param({ "x", "invert", "constant", "narrow", "exp", "outward", "inward", "peak", "triangle", "trapez", "sin",
+			"fullsin", "cos", "fullcos", "random", "squarerandom", "repeat", "mirror", "weight" })
+	public String type;
+
+	@Param({ "random", "sequential" })
+	public String order;
+
+	private ComplexMap map;
+	private float[] inputs, block;
+	private int i;
+
+	@Setup
+	public void setup() {
+		// not optimized, 'x' and 'weight' would be removed otherwise
+		map = new ComplexMap(type, false);
+		inputs = Inputs.get(order, 0, 1);
+		block = new float[Inputs.SIZE];
+	}
+
+	@Benchmark
+	public float normMap() {
+		i = (i + 1) & (Inputs.SIZE - 1);
+		return map.normMap(inputs[i]);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(Inputs.SIZE)
+	public float[] normMapAll() {
+		System.arraycopy(inputs, 0, block, 0, Inputs.SIZE);
+		map.normMapAll(block, 0, Inputs.SIZE);
+		return block;
+	}
+}
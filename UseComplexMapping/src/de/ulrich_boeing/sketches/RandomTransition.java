@@ -1,16 +1,24 @@
 package de.ulrich_boeing.sketches;
 
+import de.ulrich_boeing.map.Lut;
 import de.ulrich_boeing.map.Map;
 import de.ulrich_boeing.map.MapGenerator;
 import de.ulrich_boeing.map.Precision;
 import de.ulrich_boeing.map.Range.RepeatRange;
+import de.ulrich_boeing.map.Transition;
 import processing.core.PApplet;
 
 public class RandomTransition extends PApplet {
 	int cycleLength = 80;
-	Map map, cycleText, colorMap, cycleMap;
+	Map map, cycleText, colorMap;
+	// the position in the cycle for each frame of the cycle
+	Lut cycleMap;
+	// blends map into its target map
+	Transition transition;
 	String start, end;
 	MapGenerator mapGenerator;
+	// x-positions of all columns and y-positions of all rows, and their mapped values
+	float[] columns, rows, columnValues, rowValues;
 
 	public static void main(String[] args) {
 		PApplet.main("de.ulrich_boeing.sketches.RandomTransition");
@@ -23,9 +31,14 @@ public class RandomTransition extends PApplet {
 
 	@Override
 	public void setup() {
+		columns = getPositions(width);
+		rows = getPositions(height);
+		columnValues = new float[width];
+		rowValues = new float[height];
 		map = getRandomMap();
+		transition = new Transition(map, width);
 
-		cycleMap = Map.create("narrow 0.0, 0.5 > exp 4").setRange(0, cycleLength, 0, 1);
+		cycleMap = Map.create("narrow 0.0, 0.5 > exp 4").setRange(0, cycleLength, 0, 1).toLut(0, cycleLength - 1);
 		cycleText = Map.create(" narrow 0.4 0.99 > triangle").setRange(0, cycleLength, 0, 255);
 	}
 
@@ -34,17 +47,20 @@ public class RandomTransition extends PApplet {
 		background(0);
 
 		float normCyclePos = getNormCyclePos();
+		transition.setRatio(normCyclePos);
+		transition.mapAll(rows, rowValues);
+		transition.mapAll(columns, columnValues);
 		for (int i = 0; i < height; i++) {
-			stroke(map.map(i, normCyclePos) / 18, 0, map.map(i, normCyclePos) / 7);
+			stroke(rowValues[i] / 18, 0, rowValues[i] / 7);
 			line(0, i, width, i);
 		}
 
 		stroke(255, 0, 255, 14);
-		fillGraph(normCyclePos);
+		fillGraph();
 		noFill();
 		stroke(255, 30);
 		strokeWeight(1.5f);
-		drawGraph(normCyclePos);
+		drawGraph();
 		// Show DefString
 		// textSize(64);
 		// fill(255, 255, 255, normCyclePos * 100 + 55);
@@ -57,24 +73,33 @@ public class RandomTransition extends PApplet {
 
 	}
 
-	private void drawGraph(float normCyclePos) {
+	private void drawGraph() {
 		beginShape();
-		for (float x = 0; x < width; x++) {
-			vertex(x, map.map(x, normCyclePos));
+		for (int x = 0; x < width; x++) {
+			vertex(x, columnValues[x]);
 		}
 		endShape();
 	}
 
-	private void fillGraph(float normCyclePos) {
-		for (float x = 0; x < width; x++) {
-			line(x, map.map(x, normCyclePos), x, 0);
+	private void fillGraph() {
+		for (int x = 0; x < width; x++) {
+			line(x, columnValues[x], x, 0);
 		}
 	}
 
+	private float[] getPositions(int count) {
+		float[] positions = new float[count];
+		for (int i = 0; i < count; i++) {
+			positions[i] = i;
+		}
+		return positions;
+	}
+
 	private float getNormCyclePos() {
 		int cyclePos = frameCount % cycleLength;
 		if (cyclePos == 0) {
 			map = getRandomMap();
+			transition = new Transition(map, width);
 		}
 
 		return cycleMap.map(cyclePos);
@@ -97,8 +122,6 @@ public class RandomTransition extends PApplet {
 		System.out.println(randomMap.toString());
 
 		// System.out.println(randomMap.getDeviation(10000));
-		System.out.println("Performance new Graph:");
-		randomMap.getPerformance(1000000);
 
 		return randomMap;
 	}